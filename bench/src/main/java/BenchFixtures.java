@@ -0,0 +1,314 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+/**
+ * Workloads measured by the JMH benchmarks in {@code bench}.
+ * JMH refuses benchmark classes in the default package, and packaged classes cannot see the
+ * game's default-package classes, so each workload lives here and is loaded by name through
+ * {@code bench.Fixture}. Every fixture builds its state once and returns one operation; the
+ * operation's result goes to a JMH blackhole.
+ */
+public final class BenchFixtures {
+
+    // Fixed so every run measures the same enemy placement.
+    private static final long SEED = 42;
+
+    private BenchFixtures() {
+    }
+
+    private static Level groundLevel() {
+        Level level = new Level();
+        level.focus(0);
+        return level;
+    }
+
+    /**
+     * One {@link Player#update} of a player running back and forth and jumping. The parameter is unused.
+     */
+    public static final class PlayerUpdate implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int unused) {
+            Level level = groundLevel();
+            Player player = new Player(100, level.surfaceY(100) - 60);
+            int[] tick = {0};
+            return () -> {
+                int t = tick[0]++;
+                if ((t / 200) % 2 == 0) player.moveRight(); else player.moveLeft();
+                if (t % 40 == 0) player.jump();
+                player.update(level, t);
+                return player.getY();
+            };
+        }
+    }
+
+    /**
+     * One {@link EnemyStore#update} over {@code count} enemies, with one enemy dying every tick
+     * so the death and respawn paths are exercised too.
+     */
+    private static IntSupplier enemyUpdate(int count, int parallelThreshold) {
+        Level level = groundLevel();
+        EnemyStore store = new EnemyStore(count, new GameRandom(SEED));
+        store.setParallelThreshold(parallelThreshold);
+        for (int i = 0; i < count; i++) {
+            store.respawn(store.spawn(0, 0), level);
+        }
+        TimerWheel respawns = new TimerWheel(count);
+        TimerWheel.Handler respawn = (type, i) -> store.respawn(i, level);
+        int[] tick = {0};
+        return () -> {
+            int t = tick[0]++;
+            respawns.advance(respawn);
+            int victim = (t * 7919) % store.getHighWater();
+            if (store.isAlive(victim)) {
+                store.die(victim);
+                respawns.schedule(GameLoop.TICK_RATE, 0, victim);
+            }
+            store.update(level, t);
+            return store.getActiveCount();
+        };
+    }
+
+    /**
+     * {@link #enemyUpdate} with the store's default serial/parallel switch.
+     */
+    public static final class EnemyUpdate implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            return enemyUpdate(count, EnemyStore.DEFAULT_PARALLEL_THRESHOLD);
+        }
+    }
+
+    /**
+     * {@link #enemyUpdate} always on the calling thread.
+     */
+    public static final class EnemyUpdateSerial implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            return enemyUpdate(count, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * {@link #enemyUpdate} always split into ForkJoin tasks.
+     */
+    public static final class EnemyUpdateParallel implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            return enemyUpdate(count, 0);
+        }
+    }
+
+    /**
+     * Collision detection between the player and {@code count} enemies spread over the playfield:
+     * syncing the broadphase and classifying contacts, as the world does once per tick.
+     */
+    public static final class Collisions implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            Level level = groundLevel();
+            EnemyStore store = new EnemyStore(count, new GameRandom(SEED));
+            for (int i = 0; i < count; i++) {
+                store.respawn(store.spawn(0, 0), level);
+            }
+            CollisionSystem collisions = new CollisionSystem(World.WIDTH, World.HEIGHT, count);
+            Contacts contacts = new Contacts(count);
+            Player player = new Player(World.WIDTH / 2, level.surfaceY(World.WIDTH / 2) - 60);
+            return () -> {
+                collisions.update(store);
+                return collisions.detect(player, store, contacts);
+            };
+        }
+    }
+
+    /**
+     * One full {@link World#tick} with {@code count} enemies and a scripted player, restarting
+     * the run whenever it ends.
+     */
+    public static final class WorldTick implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            World world = new World(count, SEED);
+            return () -> {
+                if (world.isGameOver()) {
+                    world.restart();
+                }
+                world.applyInput(HeadlessRunner.PATROL.buttonsAt(world.getTick()));
+                world.tick();
+                return world.getLives();
+            };
+        }
+    }
+
+    /**
+     * Fills a particle system with {@code count} particles: mostly sparks and dust, plus one
+     * kill pop-up per 64 particles.
+     */
+    private static Particles particles(int count) {
+        Particles particles = new Particles(count, SEED);
+        for (int i = 0; particles.getCount() < count; i++) {
+            float x = 100 + (i * 37) % 1700, y = 200 + (i * 53) % 700;
+            if (i % 64 == 0) {
+                particles.spawnPopup(i + 1, x, y, 60, Particles.YELLOW);
+            } else if (i % 2 == 0) {
+                particles.spawnBurst(x, y, 24, Particles.ORANGE, 6f, 1000);
+            } else {
+                particles.spawnDust(x, y, 8);
+            }
+        }
+        return particles;
+    }
+
+    /**
+     * One {@link Particles#update} of {@code count} live particles, topped back up to
+     * {@code count} with new sparks after each tick.
+     */
+    public static final class ParticleUpdate implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            Particles particles = particles(count);
+            return () -> {
+                particles.update();
+                while (particles.getCount() < count) {
+                    particles.spawnBurst(960, 500, Math.min(24, count - particles.getCount()), Particles.ORANGE, 6f, 1000);
+                }
+                return particles.getCount();
+            };
+        }
+    }
+
+    /**
+     * One {@link TimerWheel#advance} with {@code count} timers pending. Every timer that fires
+     * schedules itself again 1 to 1024 ticks later, and one timer per tick is cancelled and
+     * rescheduled, so the pending count stays steady while every path runs.
+     */
+    public static final class TimerWheelAdvance implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            TimerWheel wheel = new TimerWheel(count);
+            GameRandom random = new GameRandom(SEED);
+            int[] handles = new int[count];
+            TimerWheel.Handler reschedule = (type, i) -> handles[i] = wheel.schedule(1 + random.nextInt(1024), 0, i);
+            for (int i = 0; i < count; i++) {
+                reschedule.onTimer(0, i);
+            }
+            return () -> {
+                int victim = random.nextInt(count);
+                wheel.cancel(handles[victim]);
+                reschedule.onTimer(0, victim);
+                return wheel.advance(reschedule);
+            };
+        }
+    }
+
+    /**
+     * {@link Particles#draw} of {@code count} particles into a full-size frame.
+     */
+    public static final class ParticleDraw implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            Font base = Assets.font(Assets.GAME_FONT);
+            Font font = (base != null) ? base.deriveFont(Font.BOLD, 32f) : new Font("Arial", Font.BOLD, 32);
+            Particles particles = particles(count);
+
+            BufferedImage target = new BufferedImage(World.WIDTH, World.HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = target.createGraphics();
+            return () -> {
+                particles.draw(g, font);
+                return target.getRGB(World.WIDTH / 2, World.HEIGHT / 2);
+            };
+        }
+    }
+
+    /**
+     * {@code count} enemies scattered over a 1920x1020 view, in every frame and facing of their
+     * idle and run clips, as a sprite-drawing workload.
+     */
+    private static EnemyStore scatteredEnemies(int count) {
+        EnemyStore store = new EnemyStore(count, new GameRandom(SEED));
+        GameRandom random = new GameRandom(SEED);
+        for (int i = 0; i < count; i++) {
+            store.spawn(random.nextInt(World.WIDTH - EnemyStore.WIDTH), random.nextInt(World.HEIGHT - EnemyStore.HEIGHT));
+        }
+        Level level = groundLevel();
+        for (int t = 0; t < 16; t++) {
+            store.update(level, t); // Mixes idle and run frames, and turns some enemies around
+        }
+        return store;
+    }
+
+    /**
+     * {@link EnemyStore#draw} of {@code count} enemies through Java2D into a
+     * {@code TYPE_INT_ARGB_PRE} image, one {@code drawImage} per enemy.
+     */
+    public static final class SpriteDrawJava2D implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            EnemyStore store = scatteredEnemies(count);
+            BufferedImage target = new BufferedImage(World.WIDTH, World.HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = target.createGraphics();
+            g.setClip(0, 0, World.WIDTH, World.HEIGHT);
+            return () -> {
+                store.draw(g, 0.5);
+                return target.getRGB(World.WIDTH / 2, World.HEIGHT / 2);
+            };
+        }
+    }
+
+    /**
+     * The same enemies batched and drawn by {@link SpriteBlitter} into the same kind of image.
+     */
+    private static IntSupplier spriteBlit(int count, int parallelThreshold) {
+        EnemyStore store = scatteredEnemies(count);
+        BufferedImage target = new BufferedImage(World.WIDTH, World.HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+        SpriteBlitter blitter = new SpriteBlitter(target, 1);
+        blitter.setParallelThreshold(parallelThreshold);
+        SpriteBatch batch = new SpriteBatch(count);
+        Rectangle bounds = new Rectangle(0, 0, World.WIDTH, World.HEIGHT);
+        return () -> {
+            batch.clear();
+            store.addTo(batch, 0.5, bounds);
+            blitter.draw(batch, 0, 0, World.WIDTH, World.HEIGHT);
+            return target.getRGB(World.WIDTH / 2, World.HEIGHT / 2);
+        };
+    }
+
+    /**
+     * {@link #spriteBlit} always on the calling thread.
+     */
+    public static final class SpriteDrawBlitter implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            return spriteBlit(count, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * {@link #spriteBlit} always split into horizontal bands.
+     */
+    public static final class SpriteDrawBlitterBands implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            return spriteBlit(count, 0);
+        }
+    }
+
+    /**
+     * A full {@link GameFrame#paintScene} at 1920x1020 into an offscreen image, with {@code count} enemies.
+     */
+    public static final class PaintScene implements IntFunction<IntSupplier> {
+        @Override
+        public IntSupplier apply(int count) {
+            GameFrame frame = new GameFrame(count);
+            frame.setSize(World.WIDTH, World.HEIGHT);
+
+            BufferedImage target = SpriteCache.createCompatibleImage(World.WIDTH, World.HEIGHT);
+            Graphics2D g = target.createGraphics();
+            return () -> {
+                frame.paintScene(g, 0.5);
+                return target.getRGB(World.WIDTH / 2, World.HEIGHT / 2);
+            };
+        }
+    }
+}
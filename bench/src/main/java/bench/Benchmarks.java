@@ -0,0 +1,29 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Accepts the usual JMH command line, and always attaches
+ * the GC profiler so allocation rates are reported alongside timings
+ * ({@code gc.alloc.rate.norm} is bytes allocated per operation).
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        options.addProfiler(GCProfiler.class);
+        options.jvmArgsAppend("-Djava.awt.headless=true");
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include("bench\\..*");
+        }
+        new Runner(options.build()).run();
+    }
+}
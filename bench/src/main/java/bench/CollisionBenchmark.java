@@ -0,0 +1,41 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Player-versus-enemy collision checks with scaled-up enemy counts, on their own and as part
+ * of a full world tick.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+
+    @Param({"1", "100", "1000", "10000"})
+    int count;
+
+    IntSupplier collisions;
+    IntSupplier worldTick;
+
+    @Setup
+    public void setup() {
+        collisions = Fixture.load("Collisions", count);
+        worldTick = Fixture.load("WorldTick", count);
+    }
+
+    @Benchmark
+    public int checkCollisions() {
+        return collisions.getAsInt();
+    }
+
+    @Benchmark
+    public int worldTick() {
+        return worldTick.getAsInt();
+    }
+}
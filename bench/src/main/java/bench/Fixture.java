@@ -0,0 +1,26 @@
+package bench;
+
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+/**
+ * Loads a workload from the default-package {@code BenchFixtures} class.
+ * The lookup happens once per trial; the returned operation is a plain interface call, so
+ * measurements carry no reflection overhead.
+ */
+final class Fixture {
+
+    private Fixture() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static IntSupplier load(String name, int param) {
+        try {
+            Class<?> type = Class.forName("BenchFixtures$" + name);
+            IntFunction<IntSupplier> factory = (IntFunction<IntSupplier>) type.getDeclaredConstructor().newInstance();
+            return factory.apply(param);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unknown fixture: " + name, e);
+        }
+    }
+}
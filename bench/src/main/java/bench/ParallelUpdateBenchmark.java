@@ -0,0 +1,40 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * {@code EnemyStore.update} forced serial and forced parallel across enemy counts. The count
+ * where parallel starts to win is the crossover to set {@code -Dgame.parallelThreshold} to on
+ * a given machine; it depends on the core count, so run this on the target hardware.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelUpdateBenchmark {
+
+    @State(Scope.Thread)
+    public static class EnemyState {
+        @Param({"256", "1024", "4096", "16384", "65536", "262144"})
+        int count;
+
+        @Param({"Serial", "Parallel"})
+        String mode;
+
+        IntSupplier op;
+
+        @Setup
+        public void setup() {
+            op = Fixture.load("EnemyUpdate" + mode, count);
+        }
+    }
+
+    @Benchmark
+    public int enemyUpdate(EnemyState state) {
+        return state.op.getAsInt();
+    }
+}
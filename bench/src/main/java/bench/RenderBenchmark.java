@@ -0,0 +1,53 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Rendering hot paths, drawn into offscreen images at the game's 1920x1020 resolution.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+    @State(Scope.Thread)
+    public static class ParticleState {
+        @Param({"1000", "10000", "100000"})
+        int particles;
+
+        IntSupplier op;
+
+        @Setup
+        public void setup() {
+            op = Fixture.load("ParticleDraw", particles);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SceneState {
+        @Param({"1", "100", "1000"})
+        int enemies;
+
+        IntSupplier op;
+
+        @Setup
+        public void setup() {
+            op = Fixture.load("PaintScene", enemies);
+        }
+    }
+
+    @Benchmark
+    public int particleDraw(ParticleState state) {
+        return state.op.getAsInt();
+    }
+
+    @Benchmark
+    public int paintScene(SceneState state) {
+        return state.op.getAsInt();
+    }
+}
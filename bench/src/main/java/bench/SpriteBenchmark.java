@@ -0,0 +1,41 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Drawing a screenful of enemy sprites with Java2D, one {@code drawImage} each, against the
+ * {@code SpriteBlitter} writing into the image's pixels, serially and in parallel bands.
+ * Both draw into the same {@code TYPE_INT_ARGB_PRE} image, which is what the blitter needs
+ * and what Java2D draws to in software.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpriteBenchmark {
+
+    @State(Scope.Thread)
+    public static class SpriteState {
+        @Param({"1000", "10000", "100000"})
+        int enemies;
+
+        @Param({"Java2D", "Blitter", "BlitterBands"})
+        String mode;
+
+        IntSupplier op;
+
+        @Setup
+        public void setup() {
+            op = Fixture.load("SpriteDraw" + mode, enemies);
+        }
+    }
+
+    @Benchmark
+    public int spriteDraw(SpriteState state) {
+        return state.op.getAsInt();
+    }
+}
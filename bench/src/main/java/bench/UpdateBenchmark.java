@@ -0,0 +1,88 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Per-tick cost of {@code Player.update}, and of {@code EnemyStore.update} and
+ * {@code Particles.update} across entity counts. Both should grow linearly with {@code count}.
+ * {@code TimerWheel.advance} should grow only with the timers firing, not those pending.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateBenchmark {
+
+    @State(Scope.Thread)
+    public static class PlayerState {
+        IntSupplier op;
+
+        @Setup
+        public void setup() {
+            op = Fixture.load("PlayerUpdate", 0);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EnemyState {
+        @Param({"1", "100", "1000", "10000", "64000"})
+        int count;
+
+        IntSupplier op;
+
+        @Setup
+        public void setup() {
+            op = Fixture.load("EnemyUpdate", count);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ParticleState {
+        @Param({"1000", "10000", "100000"})
+        int count;
+
+        IntSupplier op;
+
+        @Setup
+        public void setup() {
+            op = Fixture.load("ParticleUpdate", count);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TimerState {
+        @Param({"1000", "100000", "1000000"})
+        int count;
+
+        IntSupplier op;
+
+        @Setup
+        public void setup() {
+            op = Fixture.load("TimerWheelAdvance", count);
+        }
+    }
+
+    @Benchmark
+    public int playerUpdate(PlayerState state) {
+        return state.op.getAsInt();
+    }
+
+    @Benchmark
+    public int enemyUpdate(EnemyState state) {
+        return state.op.getAsInt();
+    }
+
+    @Benchmark
+    public int particleUpdate(ParticleState state) {
+        return state.op.getAsInt();
+    }
+
+    @Benchmark
+    public int timerWheel(TimerState state) {
+        return state.op.getAsInt();
+    }
+}
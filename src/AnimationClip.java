@@ -0,0 +1,90 @@
+import java.awt.*;
+
+/**
+ * One animation: a row of equally sized frames in a sprite sheet, each shown for a fixed
+ * number of ticks. The frame to show at every tick of one pass is precomputed, so an entity
+ * only needs to remember which clip it plays and the tick it started, and finding its current
+ * frame is a single table lookup.
+ */
+public final class AnimationClip {
+
+    private final int id;
+    private final String name;
+    private final String sheet;
+    private final int frameCount;
+    private final boolean loop;
+    private final int width, height;
+    private final int[] frameTable; // Frame index by tick, for one pass through the clip
+
+    private SpriteFrames frames; // Sliced on first draw
+
+    AnimationClip(int id, String name, String sheet, int frameCount, int ticksPerFrame, boolean loop,
+                  int width, int height) {
+        this.id = id;
+        this.name = name;
+        this.sheet = sheet;
+        this.frameCount = frameCount;
+        this.loop = loop;
+        this.width = width;
+        this.height = height;
+
+        frameTable = new int[frameCount * ticksPerFrame];
+        for (int t = 0; t < frameTable.length; t++) {
+            frameTable[t] = t / ticksPerFrame;
+        }
+    }
+
+    /**
+     * @return the frame shown {@code ticks} ticks after the clip started; a clip that does not
+     *         loop holds its last frame
+     */
+    public int frameAt(long ticks) {
+        if (ticks <= 0) return 0;
+        if (ticks >= frameTable.length) {
+            if (!loop) return frameCount - 1;
+            ticks %= frameTable.length;
+        }
+        return frameTable[(int) ticks];
+    }
+
+    /**
+     * @return true once a clip that does not loop has shown its last frame for its full time
+     */
+    public boolean isFinished(long ticks) {
+        return !loop && ticks >= frameTable.length;
+    }
+
+    /**
+     * Draws the frame shown {@code ticks} ticks after the clip started. Does nothing if the
+     * sheet is missing.
+     */
+    public void draw(Graphics g, long ticks, boolean facingRight, int x, int y) {
+        SpriteFrames frames = getFrames();
+        if (frames == null) return;
+        frames.draw(g, frameAt(ticks), facingRight, x, y);
+    }
+
+    /**
+     * @return the clip's frames sliced straight from the sheet at 1/{@code scale} of its draw
+     *         size, rounded to whole pixels, or null if the sheet is missing
+     */
+    public SpriteFrames getFrames(int scale) {
+        if (scale == 1) return getFrames();
+        return SpriteCache.get(Assets.image(sheet), frameCount, Math.max(1, Math.round((float) width / scale)),
+                Math.max(1, Math.round((float) height / scale)));
+    }
+
+    private SpriteFrames getFrames() {
+        if (frames == null) {
+            // Looked up on first draw, so a headless simulation never touches image assets.
+            frames = SpriteCache.get(Assets.image(sheet), frameCount, width, height);
+        }
+        return frames;
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public int getFrameCount() { return frameCount; }
+    public int getDuration() { return frameTable.length; }
+    public boolean isLooping() { return loop; }
+}
@@ -0,0 +1,79 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every animation clip in the game, loaded once from {@value #DESCRIPTOR}. Each line of the
+ * descriptor defines one clip:
+ * <pre>
+ * name  frames  ticksPerFrame  loop|once  width  height  sheet
+ * </pre>
+ * The sheet path comes last and may contain spaces. Entities refer to clips by their id,
+ * which is their line order in the descriptor.
+ */
+public final class Animations {
+
+    public static final String DESCRIPTOR = "/assets/animations.txt";
+
+    private static final List<AnimationClip> clips = new ArrayList<>();
+    private static final Map<String, AnimationClip> byName = new HashMap<>();
+
+    static {
+        load();
+    }
+
+    private Animations() {}
+
+    private static void load() {
+        try (InputStream in = Animations.class.getResourceAsStream(DESCRIPTOR)) {
+            if (in == null) {
+                throw new IllegalStateException("Animation descriptor not found: " + DESCRIPTOR);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] fields = line.split("\\s+", 7);
+                if (fields.length != 7) {
+                    throw new IllegalStateException(DESCRIPTOR + ":" + lineNumber + ": expected 7 fields");
+                }
+                AnimationClip clip = new AnimationClip(clips.size(), fields[0], fields[6],
+                        Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), fields[3].equals("loop"),
+                        Integer.parseInt(fields[4]), Integer.parseInt(fields[5]));
+                clips.add(clip);
+                byName.put(clip.getName(), clip);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + DESCRIPTOR, e);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the descriptor has no clip by that name
+     */
+    public static AnimationClip find(String name) {
+        AnimationClip clip = byName.get(name);
+        if (clip == null) {
+            throw new IllegalStateException("Unknown animation clip: " + name);
+        }
+        return clip;
+    }
+
+    public static AnimationClip get(int id) {
+        return clips.get(id);
+    }
+
+    public static int count() {
+        return clips.size();
+    }
+}
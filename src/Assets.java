@@ -0,0 +1,212 @@
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads every image, font and sound the game uses in parallel at startup and hands out
+ * shared handles, so creating entities or restarting the game never touches the disk.
+ */
+public final class Assets {
+
+    public static final String BACKGROUND = "/assets/bg.png";
+    public static final String GROUND = "/assets/Ground.png";
+    public static final String HEART = "/assets/hearth.png";
+    public static final String FRAME = "/assets/frame.png";
+    public static final String BUTTON = "/assets/button.png";
+
+    public static final String PLAYER_IDLE = "/assets/idle.png";
+    public static final String PLAYER_RUN = "/assets/run.png";
+    public static final String PLAYER_JUMP = "/assets/Jump (32x32).png";
+    public static final String PLAYER_FALL = "/assets/fall.png";
+    public static final String PLAYER_HIT = "/assets/hit.png";
+
+    public static final String ENEMY_IDLE = "/assets/Mushroom-Idle.png";
+    public static final String ENEMY_RUN = "/assets/Mushroom-Run.png";
+    public static final String ENEMY_DIE = "/assets/Mushroom-Die.png";
+
+    public static final String GAME_FONT = "/assets/PixelifySans-Medium.ttf";
+
+    public static final String ENEMY_HIT_SOUND = "/assets/enemy-hit.wav";
+    public static final String JUMP_SOUND = "/assets/jump-se.wav";
+
+    private static final String[] IMAGES = {
+            BACKGROUND, GROUND, HEART, FRAME, BUTTON,
+            PLAYER_IDLE, PLAYER_RUN, PLAYER_JUMP, PLAYER_FALL, PLAYER_HIT,
+            ENEMY_IDLE, ENEMY_RUN, ENEMY_DIE
+    };
+    private static final String[] FONTS = {GAME_FONT};
+    private static final String[] SOUNDS = {ENEMY_HIT_SOUND, JUMP_SOUND};
+
+    private static final Map<String, BufferedImage> images = new ConcurrentHashMap<>();
+    private static final Map<String, Font> fonts = new ConcurrentHashMap<>();
+    private static final Map<String, Sound> sounds = new ConcurrentHashMap<>();
+    private static final Map<String, Long> loadNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    private static volatile boolean loaded = false;
+
+    private Assets() {
+    }
+
+    /**
+     * Decodes all assets on a worker pool and blocks until they are ready. Safe to call more
+     * than once; only the first call does any work.
+     */
+    public static synchronized void preload() {
+        if (loaded) return;
+
+        long start = System.nanoTime();
+        int threads = Math.min(IMAGES.length + FONTS.length + SOUNDS.length,
+                Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "asset-loader");
+            t.setDaemon(true);
+            return t;
+        });
+
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (String path : IMAGES) {
+                tasks.add(pool.submit(() -> timed(path, () -> loadImage(path))));
+            }
+            for (String path : FONTS) {
+                tasks.add(pool.submit(() -> timed(path, () -> loadFont(path))));
+            }
+            for (String path : SOUNDS) {
+                tasks.add(pool.submit(() -> timed(path, () -> loadSound(path))));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (Exception e) {
+            System.err.println("Asset preload interrupted.");
+            e.printStackTrace();
+        } finally {
+            pool.shutdown();
+        }
+
+        loaded = true;
+        System.out.printf("Loaded %d assets in %.1f ms%n", loadNanos.size(), (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * @return the decoded image, or null if it is missing or failed to load
+     */
+    public static Image image(String path) {
+        preload();
+        return images.get(path);
+    }
+
+    /**
+     * @return the font at its default size of 1pt, or null if it is missing or failed to load
+     */
+    public static Font font(String path) {
+        preload();
+        return fonts.get(path);
+    }
+
+    /**
+     * @return the decoded sound, or null if it is missing or failed to load
+     */
+    public static Sound sound(String path) {
+        preload();
+        return sounds.get(path);
+    }
+
+    /**
+     * @return decode time in nanoseconds per asset path, in completion order
+     */
+    public static Map<String, Long> getLoadTimes() {
+        synchronized (loadNanos) {
+            return new LinkedHashMap<>(loadNanos);
+        }
+    }
+
+    private interface Loader {
+        void load() throws Exception;
+    }
+
+    private static void timed(String path, Loader loader) {
+        GameEvents.AssetLoad event = new GameEvents.AssetLoad();
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = true;
+        try {
+            loader.load();
+        } catch (Exception e) {
+            success = false;
+            System.err.println("Failed to load asset: " + path);
+            e.printStackTrace();
+        }
+        long elapsed = System.nanoTime() - start;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.success = success;
+            event.commit();
+        }
+        loadNanos.put(path, elapsed);
+        System.out.printf("  %-36s %7.2f ms%n", path, elapsed / 1e6);
+    }
+
+    private static void loadImage(String path) throws Exception {
+        URL url = Assets.class.getResource(path);
+        if (url == null) {
+            System.err.println("Image not found: " + path);
+            return;
+        }
+        BufferedImage decoded = ImageIO.read(url);
+        if (decoded == null) return;
+
+        // Copy into the screen's pixel layout so it can be accelerated.
+        BufferedImage image = SpriteCache.createCompatibleImage(decoded.getWidth(), decoded.getHeight());
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(decoded, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        images.put(path, image);
+    }
+
+    private static void loadFont(String path) throws Exception {
+        try (InputStream is = Assets.class.getResourceAsStream(path)) {
+            if (is == null) {
+                System.err.println("Font not found: " + path);
+                return;
+            }
+            fonts.put(path, Font.createFont(Font.TRUETYPE_FONT, is));
+        }
+    }
+
+    private static void loadSound(String path) throws Exception {
+        URL url = Assets.class.getResource(path);
+        if (url == null) {
+            System.err.println("Sound file not found: " + path);
+            return;
+        }
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(url)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            sounds.put(path, new Sound(in.getFormat(), out.toByteArray()));
+        }
+    }
+}
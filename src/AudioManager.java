@@ -1,22 +1,23 @@
-import javax.sound.sampled.*;
-import java.io.File;
-import java.net.URL;
-
 /**
  * Manages all audio playback for the game.
- * Uses Java Sound API for audio playback.
+ * Effects are played through a shared {@link AudioMixer}, so any number of jumps and hits can
+ * overlap without cutting each other off. The voice count and buffer length can be tuned with
+ * the {@code audio.voices} and {@code audio.bufferMs} system properties.
  */
 public class AudioManager {
-    private Clip enemyHitSound;
-    private Clip jumpSound;
+    private final AudioMixer mixer;
+    private int enemyHitSound = -1;
+    private int jumpSound = -1;
     
     private static AudioManager instance;
     
     private AudioManager() {
         // Private constructor for Singleton pattern.
+        mixer = new AudioMixer(Integer.getInteger("audio.voices", 32), Integer.getInteger("audio.bufferMs", 10));
+        mixer.start();
     }
     
-    public static AudioManager getInstance() {
+    public static synchronized AudioManager getInstance() {
         if (instance == null) {
             instance = new AudioManager();
         }
@@ -24,77 +25,58 @@ public class AudioManager {
     }
     
     public void loadEnemyHitSound(String path) {
-        try {
-            URL soundUrl = getClass().getResource(path);
-            if (soundUrl == null) {
-                System.out.println("Enemy hit sound file not found: " + path);
-                return;
-            }
-            
-            AudioInputStream audioIn = AudioSystem.getAudioInputStream(soundUrl);
-            enemyHitSound = AudioSystem.getClip();
-            enemyHitSound.open(audioIn);
-            System.out.println("Enemy hit sound loaded successfully.");
-        } catch (UnsupportedAudioFileException e) {
-            System.out.println("Audio format not supported for: " + path + " (Java Sound API only supports WAV, AIFF, AU)");
-        } catch (Exception e) {
-            System.out.println("Error loading enemy hit sound: " + e.getMessage());
-        }
+        enemyHitSound = load(path, "Enemy hit");
     }
     
     public void loadJumpSound(String path) {
+        jumpSound = load(path, "Jump");
+    }
+
+    private int load(String path, String name) {
         try {
-            URL soundUrl = getClass().getResource(path);
-            if (soundUrl == null) {
-                System.out.println("Jump sound file not found: " + path);
-                return;
+            Sound sound = Assets.sound(path);
+            if (sound == null) {
+                System.out.println(name + " sound file not found: " + path);
+                return -1;
             }
-            
-            AudioInputStream audioIn = AudioSystem.getAudioInputStream(soundUrl);
-            jumpSound = AudioSystem.getClip();
-            jumpSound.open(audioIn);
-            System.out.println("Jump sound loaded successfully.");
-        } catch (UnsupportedAudioFileException e) {
-            System.out.println("Audio format not supported for: " + path + " (Java Sound API only supports WAV, AIFF, AU)");
+
+            int id = mixer.add(sound);
+            System.out.println(name + " sound loaded successfully.");
+            return id;
         } catch (Exception e) {
-            System.out.println("Error loading jump sound: " + e.getMessage());
+            System.out.println("Error loading " + name.toLowerCase() + " sound: " + e.getMessage());
+            return -1;
         }
     }
     
     public void playEnemyHit() {
-        if (enemyHitSound == null) return;
-        
-        try {
-            if (enemyHitSound.isRunning()) {
-                enemyHitSound.stop();
-            }
-            enemyHitSound.setFramePosition(0);
-            enemyHitSound.start();
-        } catch (Exception e) {
-            System.out.println("Error playing enemy hit sound: " + e.getMessage());
-        }
+        playEnemyHit(0f);
+    }
+
+    /**
+     * @param pan -1 (left) to 1 (right), e.g. from where the enemy was on screen
+     */
+    public void playEnemyHit(float pan) {
+        play(enemyHitSound, "Enemy hit", pan);
     }
     
     public void playJump() {
-        if (jumpSound == null) return;
-        
-        try {
-            if (jumpSound.isRunning()) {
-                jumpSound.stop();
-            }
-            jumpSound.setFramePosition(0);
-            jumpSound.start();
-        } catch (Exception e) {
-            System.out.println("Error playing jump sound: " + e.getMessage());
+        play(jumpSound, "Jump", 0f);
+    }
+
+    private void play(int sound, String name, float pan) {
+        boolean queued = mixer.play(sound, 1f, pan);
+
+        GameEvents.SoundPlay event = new GameEvents.SoundPlay();
+        if (event.shouldCommit()) {
+            event.sound = name;
+            event.pan = pan;
+            event.queued = queued;
+            event.commit();
         }
     }
     
     public void dispose() {
-        if (enemyHitSound != null) {
-            enemyHitSound.close();
-        }
-        if (jumpSound != null) {
-            jumpSound.close();
-        }
+        mixer.stop();
     }
 }
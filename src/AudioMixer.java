@@ -0,0 +1,265 @@
+import javax.sound.sampled.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Software mixer playing any number of overlapping sound effects through one SourceDataLine.
+ * Effects are decoded to 16-bit PCM in the mixer's format once, when they are added. Playback
+ * requests go through a lock-free queue, so gameplay code never blocks on audio. A dedicated
+ * high-priority thread drains the queue and mixes a fixed pool of voices into small buffers.
+ * When all voices are busy, the oldest one is stolen.
+ */
+public class AudioMixer {
+
+    private static final float SAMPLE_RATE = 48000f;
+    private static final int CHANNELS = 2;
+    private static final int FRAME_BYTES = CHANNELS * 2;
+    private static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, false);
+
+    private static final int QUEUE_CAPACITY = 256; // Power of two
+    private static final long EMPTY = -1;
+
+    private final int bufferFrames;
+
+    // Decoded effects, interleaved stereo. Replaced, never modified, when an effect is added.
+    private volatile short[][] sounds = new short[0][];
+
+    // Voice pool, owned by the mixer thread.
+    private final int[] voiceSound;
+    private final int[] voicePosition;
+    private final float[] voiceGainLeft, voiceGainRight;
+    private final long[] voiceStarted;
+    private long voiceCounter;
+
+    // Bounded multi-producer, single-consumer trigger queue.
+    private final AtomicLongArray sequence = new AtomicLongArray(QUEUE_CAPACITY);
+    private final long[] payload = new long[QUEUE_CAPACITY];
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    private SourceDataLine line;
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param voices   most effects that can play at once
+     * @param bufferMs length of one mix buffer; latency is about two buffers
+     */
+    public AudioMixer(int voices, int bufferMs) {
+        bufferFrames = Math.max(64, (int) (SAMPLE_RATE * bufferMs / 1000));
+
+        voiceSound = new int[voices];
+        voicePosition = new int[voices];
+        voiceGainLeft = new float[voices];
+        voiceGainRight = new float[voices];
+        voiceStarted = new long[voices];
+        Arrays.fill(voiceSound, -1);
+
+        for (int i = 0; i < QUEUE_CAPACITY; i++) {
+            sequence.set(i, i);
+        }
+    }
+
+    /**
+     * Opens the audio line and starts the mixer thread.
+     *
+     * @return false if no suitable audio line is available; playback requests are then ignored
+     */
+    public synchronized boolean start() {
+        if (running) return true;
+        try {
+            line = AudioSystem.getSourceDataLine(FORMAT);
+            line.open(FORMAT, bufferFrames * FRAME_BYTES * 2);
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            System.out.println("Audio output unavailable: " + e.getMessage());
+            line = null;
+            return false;
+        }
+
+        running = true;
+        thread = new Thread(this::mixLoop, "audio-mixer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        return true;
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        if (line != null) {
+            line.close();
+            line = null;
+        }
+    }
+
+    /**
+     * Decodes an effect into the mixer's format.
+     *
+     * @return the id to pass to {@link #play}
+     */
+    public synchronized int add(Sound sound) throws Exception {
+        short[] samples = decode(sound);
+        short[][] grown = Arrays.copyOf(sounds, sounds.length + 1);
+        grown[sounds.length] = samples;
+        sounds = grown;
+        return grown.length - 1;
+    }
+
+    /**
+     * Queues an effect for playback. Never blocks; if the queue is full the request is dropped.
+     *
+     * @param volume 0 (silent) to 1 (full)
+     * @param pan    -1 (left) to 1 (right)
+     * @return false if the request was dropped or no effect was added under {@code soundId}
+     */
+    public boolean play(int soundId, float volume, float pan) {
+        // Effects are only ever added, so an id valid now stays valid for the mixing thread.
+        if (!running || soundId < 0 || soundId >= sounds.length) return false;
+        int v = Math.round(Math.max(0f, Math.min(1f, volume)) * 1000);
+        int p = Math.round((Math.max(-1f, Math.min(1f, pan)) + 1f) * 1000);
+        return offer(((long) soundId << 32) | ((long) v << 16) | p);
+    }
+
+    private boolean offer(long value) {
+        while (true) {
+            long t = tail.get();
+            int index = (int) (t & (QUEUE_CAPACITY - 1));
+            long diff = sequence.get(index) - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    payload[index] = value;
+                    sequence.lazySet(index, t + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false; // Full
+            }
+        }
+    }
+
+    private long poll() {
+        int index = (int) (head & (QUEUE_CAPACITY - 1));
+        if (sequence.get(index) != head + 1) return EMPTY;
+        long value = payload[index];
+        sequence.lazySet(index, head + QUEUE_CAPACITY);
+        head++;
+        return value;
+    }
+
+    private void mixLoop() {
+        int[] mix = new int[bufferFrames * CHANNELS];
+        byte[] out = new byte[bufferFrames * FRAME_BYTES];
+        SourceDataLine output = line;
+
+        while (running) {
+            for (long request = poll(); request != EMPTY; request = poll()) {
+                startVoice((int) (request >>> 32), ((request >>> 16) & 0xFFFF) / 1000f,
+                        (request & 0xFFFF) / 1000f - 1f);
+            }
+
+            Arrays.fill(mix, 0);
+            for (int v = 0; v < voiceSound.length; v++) {
+                if (voiceSound[v] >= 0) {
+                    mixVoice(v, mix);
+                }
+            }
+
+            for (int i = 0, o = 0; i < mix.length; i++, o += 2) {
+                int s = mix[i];
+                if (s > Short.MAX_VALUE) s = Short.MAX_VALUE;
+                else if (s < Short.MIN_VALUE) s = Short.MIN_VALUE;
+                out[o] = (byte) s;
+                out[o + 1] = (byte) (s >> 8);
+            }
+            // Blocks until the line has room, which paces the loop.
+            output.write(out, 0, out.length);
+        }
+    }
+
+    private void startVoice(int soundId, float volume, float pan) {
+        int voice = -1;
+        long oldest = Long.MAX_VALUE;
+        for (int v = 0; v < voiceSound.length; v++) {
+            if (voiceSound[v] < 0) {
+                voice = v;
+                break;
+            }
+            if (voiceStarted[v] < oldest) {
+                oldest = voiceStarted[v];
+                voice = v;
+            }
+        }
+
+        // Constant-power pan
+        double angle = (pan + 1) * Math.PI / 4;
+        voiceSound[voice] = soundId;
+        voicePosition[voice] = 0;
+        voiceGainLeft[voice] = (float) (volume * Math.cos(angle) * Math.sqrt(2));
+        voiceGainRight[voice] = (float) (volume * Math.sin(angle) * Math.sqrt(2));
+        voiceStarted[voice] = voiceCounter++;
+    }
+
+    private void mixVoice(int v, int[] mix) {
+        short[] samples = sounds[voiceSound[v]];
+        int pos = voicePosition[v];
+        int count = Math.min(mix.length, samples.length - pos);
+        float left = voiceGainLeft[v];
+        float right = voiceGainRight[v];
+        for (int i = 0; i < count; i += 2) {
+            mix[i] += (int) (samples[pos + i] * left);
+            mix[i + 1] += (int) (samples[pos + i + 1] * right);
+        }
+        pos += count;
+        if (pos >= samples.length) {
+            voiceSound[v] = -1;
+        } else {
+            voicePosition[v] = pos;
+        }
+    }
+
+    /**
+     * Converts a sound to interleaved 16-bit stereo at the mixer's sample rate.
+     */
+    private static short[] decode(Sound sound) throws Exception {
+        AudioFormat source = sound.getFormat();
+        AudioFormat pcm = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+        byte[] bytes;
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(pcm, sound.openStream())) {
+            bytes = in.readAllBytes();
+        }
+
+        int channels = source.getChannels();
+        int frames = bytes.length / (2 * channels);
+        float[] left = new float[frames];
+        float[] right = new float[frames];
+        for (int f = 0; f < frames; f++) {
+            int o = f * 2 * channels;
+            left[f] = (short) ((bytes[o] & 0xFF) | (bytes[o + 1] << 8));
+            right[f] = (channels > 1) ? (short) ((bytes[o + 2] & 0xFF) | (bytes[o + 3] << 8)) : left[f];
+        }
+
+        // Linear resampling; Java Sound does not convert sample rates itself.
+        double step = source.getSampleRate() / SAMPLE_RATE;
+        int outFrames = (int) (frames / step);
+        short[] out = new short[outFrames * CHANNELS];
+        for (int f = 0; f < outFrames; f++) {
+            double at = f * step;
+            int i = (int) at;
+            float t = (float) (at - i);
+            int j = Math.min(i + 1, frames - 1);
+            out[f * 2] = (short) (left[i] + (left[j] - left[i]) * t);
+            out[f * 2 + 1] = (short) (right[i] + (right[j] - right[i]) * t);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,94 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Finds contacts between the player and enemies through a {@link SpatialHash} broadphase.
+ * The hash is kept in step with the {@link EnemyStore} every tick, and all queries go through
+ * scratch buffers owned by this class, so collision detection allocates nothing.
+ */
+public class CollisionSystem {
+
+    // Landing within this many pixels of an enemy's top counts as a stomp.
+    private static final int STOMP_TOLERANCE = 20;
+    private static final int CELL_SIZE = 128;
+
+    private final SpatialHash hash;
+    private final int[] candidates;
+    private int hashedSlots; // Slots below this may still be in the hash
+
+    public CollisionSystem(int width, int height, int capacity) {
+        hash = new SpatialHash(width, height, CELL_SIZE, capacity);
+        candidates = new int[capacity];
+    }
+
+    /**
+     * Moves every live enemy to its current cell and drops dead or despawned ones from the hash.
+     * Only slots below the store's high-water mark are visited, plus any the mark has dropped
+     * below since the last update, which may still need removing.
+     */
+    public void update(EnemyStore enemies) {
+        int highWater = enemies.getHighWater();
+        for (int i = 0, n = Math.max(highWater, hashedSlots); i < n; i++) {
+            if (enemies.isAlive(i)) {
+                hash.update(i, enemies.getHitboxX(i), enemies.getHitboxY(i));
+            } else if (hash.contains(i)) {
+                hash.remove(i);
+            }
+        }
+        hashedSlots = highWater;
+    }
+
+    /** @return the number of bytes {@link #saveState} writes */
+    int stateSize() {
+        return hash.stateSize();
+    }
+
+    /**
+     * Writes the broadphase for {@link SaveState}. Contacts are found in the order its cell
+     * lists happen to be in, so a restored world needs the same lists to play out the same.
+     */
+    void saveState(ByteBuffer out) {
+        hash.saveState(out);
+    }
+
+    void checkState(ByteBuffer in) {
+        hash.checkState(in);
+    }
+
+    void loadState(ByteBuffer in) {
+        hash.loadState(in);
+        hashedSlots = candidates.length; // The restored lists may hold any slot
+    }
+
+    /**
+     * Classifies every live enemy overlapping the player as a stomp or a hit.
+     *
+     * @return the number of contacts written to {@code out}
+     */
+    public int detect(Player player, EnemyStore enemies, Contacts out) {
+        out.clear();
+
+        int left = player.getX();
+        int top = player.getY();
+        int right = left + player.getWidth();
+        int bottom = top + player.getHeight();
+        boolean falling = player.getDY() > 0;
+
+        int count = hash.query(left, top, player.getWidth(), player.getHeight(), candidates);
+        for (int c = 0; c < count; c++) {
+            int i = candidates[c];
+            int ex = enemies.getHitboxX(i);
+            int ey = enemies.getHitboxY(i);
+            if (right <= ex || ex + EnemyStore.HITBOX_WIDTH <= left
+                    || bottom <= ey || ey + EnemyStore.HITBOX_HEIGHT <= top) {
+                continue;
+            }
+
+            if (falling && bottom < ey + STOMP_TOLERANCE) {
+                out.add(ContactType.STOMP, i);
+            } else {
+                out.add(ContactType.HIT, i);
+            }
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * How the player touched an enemy.
+ */
+public enum ContactType {
+    /** The player landed on the enemy from above. */
+    STOMP,
+    /** The enemy ran into the player from the side or below. */
+    HIT
+}
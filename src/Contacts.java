@@ -0,0 +1,39 @@
+/**
+ * Reusable buffer of contact events produced by {@link CollisionSystem} in one tick.
+ */
+public class Contacts {
+    private final ContactType[] types;
+    private final int[] enemies;
+    private int count;
+
+    public Contacts(int capacity) {
+        types = new ContactType[capacity];
+        enemies = new int[capacity];
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    void add(ContactType type, int enemy) {
+        if (count == types.length) return;
+        types[count] = type;
+        enemies[count] = enemy;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public ContactType getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * @return the {@link EnemyStore} slot involved in the contact
+     */
+    public int getEnemy(int index) {
+        return enemies[index];
+    }
+}
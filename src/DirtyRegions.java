@@ -0,0 +1,203 @@
+/**
+ * Tracks which parts of the screen changed since the last frame.
+ * Moving sprites report their current bounds every frame with {@link #add}; the regions to
+ * repaint are those bounds together with the ones reported on the previous frame, so whatever a
+ * sprite left behind is erased too. One-off changes such as HUD updates go through
+ * {@link #invalidate}. When the changes are too many or cover too much of the screen, the
+ * frame falls back to a full redraw.
+ */
+public class DirtyRegions {
+
+    private static final int CAPACITY = 256;
+    private static final int MAX_MERGE_INPUT = 64;
+
+    private final int maxRegions;
+    private final double fullThreshold;
+
+    // Rectangles as (x1, y1, x2, y2) quadruples.
+    private int[] current = new int[CAPACITY * 4];
+    private int[] previous = new int[CAPACITY * 4];
+    private int currentCount, previousCount;
+    private boolean currentOverflow, previousOverflow;
+
+    private final int[] pending = new int[CAPACITY * 4];
+    private int pendingCount;
+
+    private final int[] regions = new int[MAX_MERGE_INPUT * 4];
+    private int regionCount;
+
+    private int width, height;
+    private int originX, originY;
+    private boolean fullRequested = true;
+    private boolean full;
+
+    /**
+     * @param maxRegions    most separate regions to repaint before falling back to a full redraw
+     * @param fullThreshold fraction of the screen above which a full redraw is cheaper
+     */
+    public DirtyRegions(int maxRegions, double fullThreshold) {
+        this.maxRegions = Math.min(maxRegions, MAX_MERGE_INPUT);
+        this.fullThreshold = fullThreshold;
+    }
+
+    /**
+     * Starts collecting the sprite bounds of a new frame.
+     */
+    public void beginFrame(int width, int height) {
+        if (width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            fullRequested = true;
+        }
+        currentCount = 0;
+        currentOverflow = false;
+    }
+
+    /**
+     * Sets the world position of the screen's top-left corner; {@link #add} takes world
+     * coordinates from then on. {@link #invalidate} always takes screen coordinates.
+     */
+    public void setOrigin(int x, int y) {
+        originX = x;
+        originY = y;
+    }
+
+    /**
+     * Reports where a sprite is drawn this frame, in world coordinates. Sprites entirely off
+     * screen are ignored.
+     */
+    public void add(int x, int y, int w, int h) {
+        x -= originX;
+        y -= originY;
+        if (x >= width || y >= height || x + w <= 0 || y + h <= 0) return;
+        if (currentCount == CAPACITY) {
+            currentOverflow = true;
+            return;
+        }
+        put(current, currentCount++, x, y, w, h);
+    }
+
+    /**
+     * Marks an area as changed for this frame only.
+     */
+    public void invalidate(int x, int y, int w, int h) {
+        if (pendingCount == CAPACITY) {
+            fullRequested = true;
+            return;
+        }
+        put(pending, pendingCount++, x, y, w, h);
+    }
+
+    public void invalidateAll() {
+        fullRequested = true;
+    }
+
+    /**
+     * Moves the bounds reported on the previous frame by {@code (dx, dy)} screen pixels, for when
+     * what is already on screen was shifted rather than redrawn, so what sprites left behind is
+     * still erased where it ended up.
+     */
+    public void scroll(int dx, int dy) {
+        for (int o = 0; o < previousCount * 4; o += 4) {
+            previous[o] += dx;
+            previous[o + 1] += dy;
+            previous[o + 2] += dx;
+            previous[o + 3] += dy;
+        }
+    }
+
+    /**
+     * Works out the regions to repaint for the frame begun by {@link #beginFrame}.
+     */
+    public void finish() {
+        full = fullRequested || currentOverflow || previousOverflow
+                || currentCount + previousCount + pendingCount > MAX_MERGE_INPUT;
+
+        if (!full) {
+            regionCount = 0;
+            appendClipped(current, currentCount);
+            appendClipped(previous, previousCount);
+            appendClipped(pending, pendingCount);
+            merge();
+
+            long area = 0;
+            for (int i = 0; i < regionCount; i++) {
+                int o = i * 4;
+                area += (long) (regions[o + 2] - regions[o]) * (regions[o + 3] - regions[o + 1]);
+            }
+            full = regionCount > maxRegions || area > fullThreshold * width * height;
+        }
+        if (full) {
+            regionCount = 1;
+            put(regions, 0, 0, 0, width, height);
+        }
+
+        int[] swap = previous;
+        previous = current;
+        current = swap;
+        previousCount = currentCount;
+        previousOverflow = currentOverflow;
+        pendingCount = 0;
+        fullRequested = false;
+    }
+
+    private void appendClipped(int[] source, int count) {
+        for (int i = 0; i < count; i++) {
+            int o = i * 4;
+            int x1 = Math.max(0, source[o]);
+            int y1 = Math.max(0, source[o + 1]);
+            int x2 = Math.min(width, source[o + 2]);
+            int y2 = Math.min(height, source[o + 3]);
+            if (x1 >= x2 || y1 >= y2) continue;
+
+            int r = regionCount++ * 4;
+            regions[r] = x1;
+            regions[r + 1] = y1;
+            regions[r + 2] = x2;
+            regions[r + 3] = y2;
+        }
+    }
+
+    /**
+     * Merges overlapping or touching regions until none remain.
+     */
+    private void merge() {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < regionCount && !merged; i++) {
+                for (int j = i + 1; j < regionCount; j++) {
+                    int a = i * 4, b = j * 4;
+                    if (regions[a] > regions[b + 2] || regions[b] > regions[a + 2]
+                            || regions[a + 1] > regions[b + 3] || regions[b + 1] > regions[a + 3]) {
+                        continue;
+                    }
+                    regions[a] = Math.min(regions[a], regions[b]);
+                    regions[a + 1] = Math.min(regions[a + 1], regions[b + 1]);
+                    regions[a + 2] = Math.max(regions[a + 2], regions[b + 2]);
+                    regions[a + 3] = Math.max(regions[a + 3], regions[b + 3]);
+
+                    int last = --regionCount * 4;
+                    System.arraycopy(regions, last, regions, b, 4);
+                    merged = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void put(int[] rects, int index, int x, int y, int w, int h) {
+        int o = index * 4;
+        rects[o] = x;
+        rects[o + 1] = y;
+        rects[o + 2] = x + w;
+        rects[o + 3] = y + h;
+    }
+
+    public boolean isFull() { return full; }
+    public int getRegionCount() { return regionCount; }
+    public int getX(int i) { return regions[i * 4]; }
+    public int getY(int i) { return regions[i * 4 + 1]; }
+    public int getWidth(int i) { return regions[i * 4 + 2] - regions[i * 4]; }
+    public int getHeight(int i) { return regions[i * 4 + 3] - regions[i * 4 + 1]; }
+}
@@ -0,0 +1,586 @@
+import java.awt.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Every mushroom in the level, kept as parallel primitive arrays with one slot per enemy.
+ * Slots are pooled: a despawned enemy's slot goes on a free list and is reused by the next
+ * spawn, so thousands of enemies can live and die without allocating anything.
+ * <p>
+ * Positions are double-buffered: an update reads last tick's positions from one pair of
+ * arrays and writes the new ones to the other, then swaps them, so the old pair doubles as
+ * the previous positions used for interpolation. Every enemy is updated from its own state
+ * alone, so with enough enemies the update is split into ForkJoin tasks over slot ranges.
+ * Respawns draw from the shared random source, so they are never part of the update: the
+ * world's {@link TimerWheel} triggers them, which keeps the parallel result identical to the
+ * serial one.
+ */
+public class EnemyStore {
+
+    public static final int WIDTH = 120, HEIGHT = 120;
+    public static final int HITBOX_WIDTH = 60, HITBOX_HEIGHT = 60;
+    public static final int SPEED = 2;
+
+    /** Random spots {@link #respawn} tries before placing an enemy just past a keep-out range. */
+    private static final int SPAWN_ATTEMPTS = 8;
+
+    private static final AnimationClip IDLE = Animations.find("enemy.idle");
+    private static final AnimationClip RUN = Animations.find("enemy.run");
+    private static final AnimationClip DIE = Animations.find("enemy.die");
+
+    /**
+     * Fewest slots in use before the update goes parallel, from {@code game.parallelThreshold}.
+     * Defaults to never on a single core.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = Integer.getInteger("game.parallelThreshold",
+            ForkJoinPool.getCommonPoolParallelism() > 1 ? 4096 : Integer.MAX_VALUE);
+    private static final int MIN_TASK_SLOTS = 1024;
+
+    private final int capacity;
+    private final GameRandom random;
+
+    // Position and motion. x/y and prevX/prevY swap on every update.
+    int[] x, y, prevX, prevY;
+    final int[] dx, dy;
+    final boolean[] facingRight;
+
+    // Animation: the clip playing and the tick it started on. A dead enemy stays visible
+    // until its death clip has finished.
+    final int[] clip;
+    final long[] clipStart;
+
+    // Lifecycle: 'active' means the slot is in use, 'alive' means the enemy can be stomped.
+    final boolean[] active, alive;
+
+    private final int[] freeSlots;
+    private int freeCount;
+    private int highWater; // One past the highest slot ever handed out.
+    private int activeCount;
+    private int spawnMinX = 0, spawnMaxX = World.WIDTH; // Range respawned enemies are placed in
+    private int[] keepOutMinX = new int[4], keepOutMaxX = new int[4]; // Ranges respawns avoid
+    private int keepOutCount;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private long tick; // Of the latest update
+
+    public EnemyStore(int capacity) {
+        this(capacity, new GameRandom(System.nanoTime()));
+    }
+
+    /**
+     * @param random source of respawn positions and directions
+     */
+    public EnemyStore(int capacity, GameRandom random) {
+        this.capacity = capacity;
+        this.random = random;
+        x = new int[capacity];
+        y = new int[capacity];
+        prevX = new int[capacity];
+        prevY = new int[capacity];
+        dx = new int[capacity];
+        dy = new int[capacity];
+        facingRight = new boolean[capacity];
+        clip = new int[capacity];
+        clipStart = new long[capacity];
+        active = new boolean[capacity];
+        alive = new boolean[capacity];
+
+        freeSlots = new int[capacity];
+        clear();
+    }
+
+    /**
+     * Copies every slot in use from another store of at least this capacity, so the copy can
+     * be drawn and queried while the original keeps updating. The free list is not copied:
+     * the copy is not meant to spawn or update enemies.
+     */
+    public void copyFrom(EnemyStore other) {
+        int n = other.highWater;
+        System.arraycopy(other.x, 0, x, 0, n);
+        System.arraycopy(other.y, 0, y, 0, n);
+        System.arraycopy(other.prevX, 0, prevX, 0, n);
+        System.arraycopy(other.prevY, 0, prevY, 0, n);
+        System.arraycopy(other.dx, 0, dx, 0, n);
+        System.arraycopy(other.dy, 0, dy, 0, n);
+        System.arraycopy(other.facingRight, 0, facingRight, 0, n);
+        System.arraycopy(other.clip, 0, clip, 0, n);
+        System.arraycopy(other.clipStart, 0, clipStart, 0, n);
+        System.arraycopy(other.active, 0, active, 0, n);
+        System.arraycopy(other.alive, 0, alive, 0, n);
+        highWater = n;
+        activeCount = other.activeCount;
+        tick = other.tick;
+    }
+
+    /**
+     * Places a new enemy walking right at the given position.
+     *
+     * @return the slot of the new enemy, or -1 if the store is full
+     */
+    public int spawn(int x, int y) {
+        if (freeCount == 0) return -1;
+        int i = freeSlots[--freeCount];
+        if (i >= highWater) highWater = i + 1;
+        activeCount++;
+
+        active[i] = true;
+        this.x[i] = prevX[i] = x;
+        this.y[i] = prevY[i] = y;
+        dx[i] = SPEED;
+        dy[i] = 0;
+        facingRight[i] = true;
+        resetLife(i);
+        return i;
+    }
+
+    /**
+     * Releases a slot back to the pool.
+     */
+    public void despawn(int i) {
+        if (!active[i]) return;
+        active[i] = false;
+        alive[i] = false;
+        freeSlots[freeCount++] = i;
+        activeCount--;
+        while (highWater > 0 && !active[highWater - 1]) {
+            highWater--;
+        }
+    }
+
+    /**
+     * Despawns every enemy. Low slots are handed out first afterwards so iteration stays dense.
+     */
+    public void clear() {
+        for (int i = 0; i < highWater; i++) {
+            active[i] = false;
+            alive[i] = false;
+        }
+        for (int i = 0; i < capacity; i++) {
+            freeSlots[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+        highWater = 0;
+        activeCount = 0;
+    }
+
+    /**
+     * Sets how many slots must be in use before {@link #update} runs in parallel.
+     * 0 always runs in parallel and {@link Integer#MAX_VALUE} never does.
+     */
+    public void setParallelThreshold(int slots) {
+        parallelThreshold = slots;
+    }
+
+    /**
+     * Advances walking, gravity, ground collision and animation for every enemy to world
+     * tick {@code tick}.
+     */
+    public void update(Level level, long tick) {
+        this.tick = tick;
+        if (highWater >= parallelThreshold) {
+            int grain = Math.max(MIN_TASK_SLOTS, highWater / (ForkJoinPool.getCommonPoolParallelism() * 4));
+            ForkJoinPool.commonPool().invoke(new UpdateTask(level, 0, highWater, grain));
+        } else {
+            updateRange(level, 0, highWater);
+        }
+
+        int[] swap = prevX;
+        prevX = x;
+        x = swap;
+        swap = prevY;
+        prevY = y;
+        y = swap;
+    }
+
+    /**
+     * Updates slots {@code from} until {@code to}, reading positions from x/y and writing them
+     * to prevX/prevY. Touches nothing outside those slots.
+     */
+    private void updateRange(Level level, int from, int to) {
+        int[] x = this.x, y = this.y, nextX = prevX, nextY = prevY;
+        int maxX = level.getWidth();
+        int tileSize = level.getTileSize();
+        int inset = (WIDTH - HITBOX_WIDTH) / 2;
+
+        for (int i = from; i < to; i++) {
+            if (!active[i]) continue;
+
+            int ex = x[i], ey = y[i];
+            nextX[i] = ex;
+            nextY[i] = ey;
+
+            if (!alive[i]) continue;
+
+            // Walk until the hitbox runs into a wall or the level edge, then turn around.
+            ex += dx[i];
+            int feet = ey + HEIGHT - 1;
+            int front = dx[i] > 0 ? ex + inset + HITBOX_WIDTH - 1 : ex + inset;
+            if (ex + inset <= 0 || ex + inset + HITBOX_WIDTH >= maxX || level.isSolid(front, feet)) {
+                ex -= dx[i];
+                dx[i] = -dx[i];
+            }
+            facingRight[i] = dx[i] > 0;
+
+            dy[i] += 1; // Gravity
+            ey += dy[i];
+            int below = ey + HEIGHT;
+            if (level.isSolid(ex + inset, below) || level.isSolid(ex + inset + HITBOX_WIDTH - 1, below)) {
+                ey = Math.floorDiv(below, tileSize) * tileSize - HEIGHT;
+                dy[i] = 0;
+            }
+
+            nextX[i] = ex;
+            nextY[i] = ey;
+            play(i, (dx[i] != 0) ? RUN : IDLE);
+        }
+    }
+
+    /**
+     * Switches an enemy to a clip, restarting it only if it is not already playing.
+     */
+    private void play(int i, AnimationClip next) {
+        if (clip[i] != next.getId()) {
+            clip[i] = next.getId();
+            clipStart[i] = tick;
+        }
+    }
+
+    boolean isVisible(int i) {
+        return active[i] && (alive[i] || !DIE.isFinished(tick - clipStart[i]));
+    }
+
+    /**
+     * Splits a slot range in halves until it is small enough to update directly.
+     */
+    private final class UpdateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Level level;
+        private final int from, to, grain;
+
+        UpdateTask(Level level, int from, int to, int grain) {
+            this.level = level;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                updateRange(level, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new UpdateTask(level, from, mid, grain), new UpdateTask(level, mid, to, grain));
+        }
+    }
+
+    /**
+     * Draws every visible enemy interpolated between its previous and current tick positions.
+     */
+    public void draw(Graphics g, double alpha) {
+        Rectangle bounds = g.getClipBounds();
+        for (int i = 0; i < highWater; i++) {
+            if (!isVisible(i)) continue;
+
+            int drawX = (int) Math.round(prevX[i] + (x[i] - prevX[i]) * alpha);
+            int drawY = (int) Math.round(prevY[i] + (y[i] - prevY[i]) * alpha);
+            if (bounds != null && (drawX >= bounds.x + bounds.width || drawX + WIDTH <= bounds.x
+                    || drawY >= bounds.y + bounds.height || drawY + HEIGHT <= bounds.y)) {
+                continue; // Off screen, most of the level
+            }
+
+            Animations.get(clip[i]).draw(g, tick - clipStart[i], facingRight[i], drawX, drawY);
+        }
+    }
+
+    /**
+     * Adds every visible enemy inside {@code bounds}, in level pixels, to a batch for
+     * {@link SpriteBlitter}, interpolated like {@link #draw}.
+     */
+    public void addTo(SpriteBatch batch, double alpha, Rectangle bounds) {
+        for (int i = 0; i < highWater; i++) {
+            if (!isVisible(i)) continue;
+
+            int drawX = (int) Math.round(prevX[i] + (x[i] - prevX[i]) * alpha);
+            int drawY = (int) Math.round(prevY[i] + (y[i] - prevY[i]) * alpha);
+            if (drawX >= bounds.x + bounds.width || drawX + WIDTH <= bounds.x
+                    || drawY >= bounds.y + bounds.height || drawY + HEIGHT <= bounds.y) {
+                continue;
+            }
+
+            batch.add(Animations.get(clip[i]), tick - clipStart[i], facingRight[i], drawX, drawY);
+        }
+    }
+
+    /**
+     * Reports where every visible enemy is drawn this frame.
+     */
+    public void addBounds(DirtyRegions dirty, double alpha) {
+        for (int i = 0; i < highWater; i++) {
+            if (!isVisible(i)) continue;
+
+            int drawX = (int) Math.round(prevX[i] + (x[i] - prevX[i]) * alpha);
+            int drawY = (int) Math.round(prevY[i] + (y[i] - prevY[i]) * alpha);
+            dirty.add(drawX, drawY, WIDTH, HEIGHT);
+        }
+    }
+
+    /**
+     * Starts the death animation of an enemy.
+     */
+    public void die(int i) {
+        if (!alive[i]) return;
+        alive[i] = false;
+        play(i, DIE);
+    }
+
+    /**
+     * Sets the horizontal range, in level pixels, that {@link #respawn} places enemies in.
+     */
+    public void setSpawnRange(int minX, int maxX) {
+        spawnMinX = minX;
+        spawnMaxX = maxX;
+    }
+
+    /**
+     * Removes every range added by {@link #addKeepOut}.
+     */
+    public void clearKeepOut() {
+        keepOutCount = 0;
+    }
+
+    /**
+     * Keeps the hitboxes of respawned enemies out of a horizontal range, in level pixels,
+     * such as the area around a player.
+     */
+    public void addKeepOut(int minX, int maxX) {
+        if (keepOutCount == keepOutMinX.length) {
+            keepOutMinX = Arrays.copyOf(keepOutMinX, keepOutCount * 2);
+            keepOutMaxX = Arrays.copyOf(keepOutMaxX, keepOutCount * 2);
+        }
+        keepOutMinX[keepOutCount] = minX;
+        keepOutMaxX[keepOutCount] = maxX;
+        keepOutCount++;
+    }
+
+    /**
+     * Brings an enemy back to life at a random spot on the ground within the spawn range,
+     * walking in a random direction. Spots whose hitbox would overlap a keep-out range are
+     * re-rolled; if every try lands in one, the enemy is moved just past it.
+     */
+    public void respawn(int i, Level level) {
+        resetLife(i);
+
+        x[i] = spawnX();
+        y[i] = highestSurface(level, x[i] + (WIDTH - HITBOX_WIDTH) / 2) - HEIGHT;
+        dy[i] = 0;
+        dx[i] = random.nextBoolean() ? SPEED : -SPEED;
+        facingRight[i] = dx[i] > 0;
+
+        // Teleport: don't interpolate from the old position.
+        prevX[i] = x[i];
+        prevY[i] = y[i];
+
+        GameEvents.EnemyRespawn event = new GameEvents.EnemyRespawn();
+        if (event.shouldCommit()) {
+            event.enemy = i;
+            event.x = x[i];
+            event.y = y[i];
+            event.facingRight = facingRight[i];
+            event.commit();
+        }
+    }
+
+    private int spawnX() {
+        int range = spawnMaxX - spawnMinX - WIDTH;
+        int inset = (WIDTH - HITBOX_WIDTH) / 2;
+        int ex = spawnMinX;
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++) {
+            ex = spawnMinX + random.nextInt(range);
+            if (keptOut(ex + inset) < 0) return ex;
+        }
+        return nearestClearX(ex, spawnMinX, spawnMinX + Math.max(0, range - 1));
+    }
+
+    /**
+     * Finds the x in {@code minX..maxX} nearest to {@code x} whose hitbox is clear of every
+     * keep-out range. Any clear stretch ends at the edge of the range or next to a keep-out
+     * range, so only those places are tried.
+     *
+     * @return that x, or {@code x} if the keep-out ranges cover the whole range
+     */
+    private int nearestClearX(int x, int minX, int maxX) {
+        int inset = (WIDTH - HITBOX_WIDTH) / 2;
+        int best = x;
+        long bestDistance = Long.MAX_VALUE;
+        for (int k = -1; k < keepOutCount; k++) {
+            for (int side = 0; side < 2; side++) {
+                int candidate;
+                if (k < 0) {
+                    candidate = side == 0 ? minX : maxX;
+                } else {
+                    candidate = side == 0 ? keepOutMinX[k] - inset - HITBOX_WIDTH : keepOutMaxX[k] - inset;
+                }
+                if (candidate < minX || candidate > maxX || keptOut(candidate + inset) >= 0) continue;
+                long distance = Math.abs((long) candidate - x);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = candidate;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the keep-out range a hitbox starting at {@code hitboxX} overlaps, or -1
+     */
+    private int keptOut(int hitboxX) {
+        for (int k = 0; k < keepOutCount; k++) {
+            if (hitboxX < keepOutMaxX[k] && hitboxX + HITBOX_WIDTH > keepOutMinX[k]) return k;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the top of the higher ground under either side of a hitbox starting at {@code hitboxX}
+     */
+    private static int highestSurface(Level level, int hitboxX) {
+        return Math.min(level.surfaceY(hitboxX), level.surfaceY(hitboxX + HITBOX_WIDTH - 1));
+    }
+
+    private void resetLife(int i) {
+        alive[i] = true;
+        clip[i] = IDLE.getId();
+        clipStart[i] = tick;
+    }
+
+    public boolean isActive(int i) {
+        return active[i];
+    }
+
+    public boolean isAlive(int i) {
+        return active[i] && alive[i];
+    }
+
+    public int getHitboxX(int i) {
+        return x[i] + (WIDTH - HITBOX_WIDTH) / 2;
+    }
+
+    public int getHitboxY(int i) {
+        return y[i] + (HEIGHT - HITBOX_HEIGHT); // Align hitbox with bottom
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return one past the highest slot in use; iterate {@code 0..getHighWater()} and skip inactive slots
+     */
+    public int getHighWater() {
+        return highWater;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /** @return the number of bytes {@link #saveState} writes */
+    int stateSize() {
+        return 6 * Integer.BYTES + Long.BYTES + highWater * (5 * Integer.BYTES + Long.BYTES + 3)
+                + freeCount * Integer.BYTES;
+    }
+
+    /**
+     * Writes every slot in use and the free list for {@link SaveState}.
+     */
+    void saveState(ByteBuffer out) {
+        out.putInt(highWater).putInt(activeCount).putInt(freeCount).putInt(spawnMinX).putInt(spawnMaxX)
+                .putInt(capacity).putLong(tick);
+        SaveState.putInts(out, x, highWater);
+        SaveState.putInts(out, y, highWater);
+        SaveState.putInts(out, dx, highWater);
+        SaveState.putInts(out, dy, highWater);
+        SaveState.putInts(out, clip, highWater);
+        SaveState.putLongs(out, clipStart, highWater);
+        SaveState.putBooleans(out, facingRight, highWater);
+        SaveState.putBooleans(out, active, highWater);
+        SaveState.putBooleans(out, alive, highWater);
+        SaveState.putInts(out, freeSlots, freeCount);
+    }
+
+    /**
+     * Reads state written by {@link #saveState} and checks it fits this store. Changes nothing.
+     */
+    void checkState(ByteBuffer in) {
+        int slots = in.getInt();
+        int active = in.getInt();
+        int free = in.getInt();
+        in.getInt();
+        in.getInt();
+        if (in.getInt() != capacity || slots < 0 || slots > capacity || free < 0 || free > capacity
+                || active < 0 || active > slots || active + free != capacity) {
+            throw new IllegalArgumentException("Enemy state does not fit a store of " + capacity);
+        }
+        in.getLong();
+        SaveState.skip(in, 4 * slots, Integer.BYTES);
+        SaveState.checkInts(in, slots, 0, Animations.count() - 1, "enemy clip");
+        SaveState.skip(in, slots, Long.BYTES);
+        SaveState.skip(in, 3 * slots, 1);
+        SaveState.checkInts(in, free, 0, capacity - 1, "free enemy slot");
+    }
+
+    /**
+     * Restores state written by {@link #saveState} from a store of the same capacity, without
+     * interpolating from the old positions.
+     */
+    void loadState(ByteBuffer in) {
+        clear();
+        int slots = in.getInt();
+        activeCount = in.getInt();
+        int free = in.getInt();
+        spawnMinX = in.getInt();
+        spawnMaxX = in.getInt();
+        if (in.getInt() != capacity || slots < 0 || slots > capacity || free < 0 || free > capacity) {
+            throw new IllegalArgumentException("Enemy state does not fit a store of " + capacity);
+        }
+        tick = in.getLong();
+        highWater = slots;
+        freeCount = free;
+        SaveState.getInts(in, x, slots);
+        SaveState.getInts(in, y, slots);
+        SaveState.getInts(in, dx, slots);
+        SaveState.getInts(in, dy, slots);
+        SaveState.getInts(in, clip, slots);
+        SaveState.getLongs(in, clipStart, slots);
+        SaveState.getBooleans(in, facingRight, slots);
+        SaveState.getBooleans(in, active, slots);
+        SaveState.getBooleans(in, alive, slots);
+        SaveState.getInts(in, freeSlots, free);
+        System.arraycopy(x, 0, prevX, 0, slots);
+        System.arraycopy(y, 0, prevY, 0, slots);
+    }
+
+    /**
+     * Folds the simulation state of every slot in use into {@code hash}.
+     */
+    long checksum(long hash) {
+        hash = World.hash(hash, highWater);
+        for (int i = 0; i < highWater; i++) {
+            if (!active[i]) continue;
+            hash = World.hash(hash, i);
+            hash = World.hash(hash, x[i]);
+            hash = World.hash(hash, y[i]);
+            hash = World.hash(hash, dx[i]);
+            hash = World.hash(hash, dy[i]);
+            hash = World.hash(hash, clip[i]);
+            hash = World.hash(hash, clipStart[i]);
+            hash = World.hash(hash, alive[i] ? 1 : 0);
+        }
+        return hash;
+    }
+}
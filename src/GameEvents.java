@@ -0,0 +1,119 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events emitted by the game, so a recording shows gameplay next to GC and
+ * JIT activity. Record with e.g. {@code java -XX:StartFlightRecording=filename=game.jfr GameFrame}.
+ * <p>
+ * Emitters follow the usual pattern of creating the event and checking
+ * {@link Event#shouldCommit()} before filling in fields. With recording off, that check is
+ * constant-folded by the JIT and the event object is never actually allocated.
+ */
+public final class GameEvents {
+
+    private static final String CATEGORY = "Mini Mario Bros";
+
+    private GameEvents() {}
+
+    @Name("minimario.Tick")
+    @Label("Tick")
+    @Description("One fixed-timestep simulation tick")
+    @Category({CATEGORY, "Simulation"})
+    @StackTrace(false)
+    public static final class Tick extends Event {
+        @Label("Tick Number")
+        public long tick;
+
+        @Label("Active Enemies")
+        public int activeEnemies;
+    }
+
+    @Name("minimario.Paint")
+    @Label("Paint")
+    @Description("Composing and presenting one frame")
+    @Category({CATEGORY, "Rendering"})
+    @StackTrace(false)
+    public static final class Paint extends Event {
+        @Label("Dirty Regions")
+        public int regions;
+
+        @Label("Full Redraw")
+        public boolean fullRedraw;
+    }
+
+    @Name("minimario.Collision")
+    @Label("Collision")
+    @Description("The player stomped an enemy or was hit by one")
+    @Category({CATEGORY, "Simulation"})
+    @StackTrace(false)
+    public static final class Collision extends Event {
+        @Label("Type")
+        public String type;
+
+        @Label("Enemy")
+        public int enemy;
+
+        @Label("Player X")
+        public int playerX;
+
+        @Label("Player Y")
+        public int playerY;
+
+        @Label("Score")
+        public int score;
+
+        @Label("Lives")
+        public int lives;
+    }
+
+    @Name("minimario.EnemyRespawn")
+    @Label("Enemy Respawn")
+    @Category({CATEGORY, "Simulation"})
+    @StackTrace(false)
+    public static final class EnemyRespawn extends Event {
+        @Label("Enemy")
+        public int enemy;
+
+        @Label("X")
+        public int x;
+
+        @Label("Y")
+        public int y;
+
+        @Label("Facing Right")
+        public boolean facingRight;
+    }
+
+    @Name("minimario.AssetLoad")
+    @Label("Asset Load")
+    @Category({CATEGORY, "Assets"})
+    @StackTrace(false)
+    public static final class AssetLoad extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    @Name("minimario.SoundPlay")
+    @Label("Sound Play")
+    @Description("A sound effect handed to the mixer")
+    @Category({CATEGORY, "Audio"})
+    @StackTrace(false)
+    public static final class SoundPlay extends Event {
+        @Label("Sound")
+        public String sound;
+
+        @Label("Pan")
+        public float pan;
+
+        @Label("Queued")
+        @Description("False if the mixer dropped the request")
+        public boolean queued;
+    }
+}
@@ -1,154 +1,712 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.io.InputStream;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * The main panel for the game, handling the game loop, rendering, and input.
+ * The main canvas for the game: renders a {@link World} and feeds it keyboard and mouse input.
+ * The simulation ticks on one {@link GameLoop} thread and frames are rendered on another, so a
+ * slow frame never delays a tick. After each tick the simulation copies what is drawn into a
+ * {@link RenderSnapshot} and publishes it through a {@link TripleBuffer}; the renderer draws
+ * the newest one and never touches the world. Key events are queued in an
+ * {@link InputBuffer} and applied at the start of the next tick, and a click on the restart
+ * button is likewise handed to the simulation thread.
+ * <p>
+ * With {@code -Dgame.pixelScale=<n>} the world is drawn into a frame of 1/n the view size,
+ * e.g. 480x255 for 4, which is scaled up to the window by the largest whole factor that fits,
+ * in device pixels, with nearest-neighbour sampling. That fills a fraction of the pixels and
+ * keeps the pixel art crisp at any window size. The HUD is drawn after the upscale at window
+ * resolution, so its text stays readable.
+ * <p>
+ * With {@code -Dgame.renderer=software} frames are composed in a plain image in memory
+ * instead of video memory, and the enemies are drawn by a {@link SpriteBlitter} straight into
+ * its pixels, which is much faster than Java2D with many thousands of enemies on screen.
+ * <p>
+ * F5 quick-saves the run to a {@link SaveState} file and F9 loads it back. Started from
+ * {@link #main}, the run is also saved every few seconds and on exit, and the next launch
+ * resumes it unless it had ended, so neither quitting nor a crash loses more than a moment.
  */
-public class GameFrame extends JPanel implements ActionListener, KeyListener {
+public class GameFrame extends Canvas implements GameLoop.Game, World.Listener, KeyListener {
+
+    private static final int ENEMY_COUNT = Math.max(1, Integer.getInteger("game.enemies", 1));
+
+    // Areas repainted when the HUD on either side of the top edge changes.
+    private static final int HUD_WIDTH = 420, HUD_HEIGHT = 80;
+
+    // Frame-time overlay, toggled with F3.
+    private static final int STATS_X = 20, STATS_Y = 90, STATS_WIDTH = 520;
+    private static final int STATS_LINE_HEIGHT = 22;
+    private static final int STATS_HEIGHT = (Profiler.PHASE_COUNT + 1) * STATS_LINE_HEIGHT + 12;
+    private static final Color STATS_BACKGROUND = new Color(255, 255, 255, 170);
+
+    private static final double BACKGROUND_PARALLAX = 0.25;
+
+    // View pixels per frame pixel; 1 draws at window resolution.
+    private static final int PIXEL_SCALE = Math.max(1, Integer.getInteger("game.pixelScale", 1));
+
+    // F5 writes and F9 reads this file; the run is saved to the autosave file for resuming.
+    private static final Path QUICK_SAVE = Paths.get(System.getProperty("game.quickSave", "quicksave.mmbs"));
+    private static final Path AUTOSAVE = Paths.get(System.getProperty("game.autosave", "autosave.mmbs"));
+    private static final int AUTOSAVE_TICKS = 5 * GameLoop.TICK_RATE;
+    private static final long EXIT_TIMEOUT_MILLIS = 5000;
+
+    private static final boolean SOFTWARE_RENDERER = "software".equals(System.getProperty("game.renderer"));
+
+    private final World world;
+    private final GameLoop simulation;
+    private final GameLoop renderer;
+    private volatile boolean restartRequested;
+    private volatile boolean quickSaveRequested, quickLoadRequested;
+    private final Path autosave; // Null unless the run is saved for resuming
+    private long lastAutosaveTick = -1;
+
+    // Saves are captured on the simulation thread and written to disk on this one, in order.
+    private final ExecutorService saveWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "save-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<ByteBuffer> spareSaveBuffer = new AtomicReference<>(); // Handed back once written
+    private Future<?> lastSave;
+
+    // Filled by the simulation thread, drawn by the render thread.
+    private final TripleBuffer<RenderSnapshot> snapshots;
+    private RenderSnapshot view; // The one being drawn
+    private long lastViewTick = -1;
+
+    // The renderer's own view of the level, so drawing never races the simulation's streaming.
+    private final Level level;
+    private final InputBuffer input = new InputBuffer();
+    private final Profiler profiler = new Profiler();
+
+    // Set by -Dgame.record and -Dgame.replay respectively.
+    private Replay.Recorder recorder;
+    private Replay.Playback playback;
+    private int replaySpeed = 1;
+    private long lastPresent;
+
+    // Frames are composed here and only the changed regions are repainted each frame.
+    private Image frame;
+    private SpriteBlitter blitter; // Draws into the frame with the software renderer; null otherwise
+    private final SpriteBatch sprites = new SpriteBatch(256); // Player and enemies, when drawn in frame pixels
+    private AffineTransform frameTransform; // Of the frame's graphics, in frame pixels
+    private final DirtyRegions dirty = new DirtyRegions(8, 0.5);
+
+    // Sky background, rendered once per view size and scrolled slower than the level.
+    private final StaticLayers layers = new StaticLayers();
+
+    // Top-left corner of the view in level pixels.
+    private int cameraX, cameraY;
 
     private Image background;
-    private Timer timer;
-    private Player player;
-    private Enemy enemy;
-    private Level level;
-    private Score score;
-
     private Image heartImage;
-    private int lives = 3;
     
     private Font gameFont;
     private Font gameFontBold;
+
+    private TextStyle hudStyle;
+    private TextStyle gameOverStyle;
+    private TextStyle finalScoreStyle;
+
+    // HUD text is only re-rendered when the value behind it changes.
+    private int hudScore = -1;
+    private TextSprite hudScoreSprite;
+    private int hudLives = -1;
+    private int hudFps = -1, hudTps = -1, hudLatency = -1;
+    private boolean hudGameOver;
+    private TextSprite hudRatesSprite;
+    private int finalScore = -1;
+    private TextSprite finalScoreSprite;
+
+    private volatile boolean statsVisible;
+    private boolean statsShown;
+    private boolean statsChanged;
+    private final TextSprite[] statsSprites = new TextSprite[Profiler.PHASE_COUNT + 1];
     
     private Image frameImage;
     private Image buttonImage;
-    private Rectangle buttonBounds;
+    private volatile Rectangle buttonBounds; // Drawn by the renderer, clicked on the EDT
+
+    // Maps window coordinates to view coordinates when the frame is upscaled; null otherwise.
+    private volatile AffineTransform windowToView;
+    private int presentScale, presentX, presentY;
+    private double presentDeviceScale;
 
-    private boolean isGameOver = false;
-    private boolean enemyRespawning = false;
-    
-    private ArrayList<FloatingText> floatingTexts = new ArrayList<>();
     private AudioManager audioManager;
 
-    public static final int WIDTH = 1920;
-    public static final int HEIGHT = 1020;
+    public static final int WIDTH = World.WIDTH;
+    public static final int HEIGHT = World.HEIGHT;
 
+    /**
+     * Creates the game as it is played, resuming the run saved to {@code game.autosave} if
+     * there is one.
+     */
     public GameFrame() {
-        setLayout(null);
+        this(ENEMY_COUNT, AUTOSAVE);
+    }
+
+    public GameFrame(int enemyCount) {
+        this(enemyCount, null);
+    }
+
+    private GameFrame(int enemyCount, Path autosave) {
+        this.autosave = autosave;
+        setIgnoreRepaint(true);
+        setBackground(Color.CYAN);
 
         loadAssets();
         
         audioManager = AudioManager.getInstance();
-        audioManager.loadEnemyHitSound("/assets/enemy-hit.wav");
-        audioManager.loadJumpSound("/assets/jump-se.wav");
+        audioManager.loadEnemyHitSound(Assets.ENEMY_HIT_SOUND);
+        audioManager.loadJumpSound(Assets.JUMP_SOUND);
 
-        level = new Level();
-        level.updateGroundY(HEIGHT);
+        world = createWorld(enemyCount);
+        world.setListener(this);
+        world.getLevel().getMap().getHash(); // Read through once now rather than on the first save
+        world.setProfiler(profiler);
 
-        int groundY = level.getGroundY();
-        player = new Player(100, groundY - 60);
-        enemy = new Enemy(600, groundY - 60);
-        score = new Score();
+        level = new Level(world.getLevel().getMap());
+        snapshots = new TripleBuffer<>(new RenderSnapshot(world), new RenderSnapshot(world),
+                new RenderSnapshot(world));
+        publishSnapshot();
+        view = snapshots.getReadBuffer();
+
+        layers.addLayer(this::paintBackground, BACKGROUND_PARALLAX);
+
+        simulation = new GameLoop(new GameLoop.Game() {
+            @Override
+            public void tick() {
+                GameFrame.this.tick();
+            }
+
+            @Override
+            public void render(double alpha) {}
+        }, GameLoop.TICK_RATE);
+        renderer = GameLoop.renderOnly(this, GameLoop.configuredFps());
 
-        timer = new Timer(20, this);
-        timer.start();
-        
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (isGameOver && buttonBounds != null && buttonBounds.contains(e.getPoint())) {
-                    respawnGame();
+                Rectangle button = buttonBounds;
+                AffineTransform toView = windowToView;
+                Point2D point = (toView != null) ? toView.transform(e.getPoint(), null) : e.getPoint();
+                if (button != null && button.contains(point)) {
+                    restartRequested = true;
                 }
             }
         });
 
         setFocusable(true);
         addKeyListener(this);
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                input.releaseAll();
+            }
+        });
     }
 
-    private void loadAssets() {
-        try {
-            URL bgUrl = getClass().getResource("/assets/bg.png");
-            if (bgUrl != null) {
-                background = new ImageIcon(bgUrl).getImage();
-            }
-            
-            URL heartUrl = getClass().getResource("/assets/hearth.png");
-            if (heartUrl != null) {
-                heartImage = new ImageIcon(heartUrl).getImage();
-            }
-            
-            URL frameUrl = getClass().getResource("/assets/frame.png");
-            if (frameUrl != null) {
-                frameImage = new ImageIcon(frameUrl).getImage();
+    /**
+     * Creates the world to play: the one a replay file starts from if {@code game.replay} is
+     * set, otherwise the autosaved run if it has not ended, otherwise a new one seeded from
+     * {@code game.seed} or the clock. A recording always starts a new run.
+     */
+    private World createWorld(int enemyCount) {
+        String replayPath = System.getProperty("game.replay");
+        if (replayPath != null) {
+            try {
+                playback = Replay.Playback.load(Paths.get(replayPath));
+                replaySpeed = Math.max(1, Integer.getInteger("game.replaySpeed", 1));
+                return playback.createWorld();
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Failed to load replay: " + replayPath);
+                e.printStackTrace();
+                playback = null;
             }
-            
-            URL buttonUrl = getClass().getResource("/assets/button.png");
-            if (buttonUrl != null) {
-                buttonImage = new ImageIcon(buttonUrl).getImage();
-            }
-            
-            InputStream is = getClass().getResourceAsStream("/assets/PixelifySans-Medium.ttf");
-            if (is != null) {
-                Font baseFont = Font.createFont(Font.TRUETYPE_FONT, is);
-                gameFont = baseFont.deriveFont(18f);
-                gameFontBold = baseFont.deriveFont(Font.BOLD, 32f);
-                is.close();
-            } else {
-                gameFont = new Font("Arial", Font.PLAIN, 18);
-                gameFontBold = new Font("Arial", Font.BOLD, 32);
+        }
+
+        if (autosave != null && System.getProperty("game.record") == null && Files.exists(autosave)) {
+            try {
+                World world = SaveState.load(autosave);
+                if (!world.isGameOver()) {
+                    System.out.println("Resumed from " + autosave + " at tick " + world.getTick());
+                    return world;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Failed to resume from " + autosave);
+                e.printStackTrace();
             }
-        } catch (Exception e) {
-            System.err.println("Failed to load one or more assets. Using fallback.");
-            e.printStackTrace();
+        }
+
+        Long seed = Long.getLong("game.seed");
+        World world = new World(enemyCount, seed != null ? seed : System.nanoTime());
+        if (System.getProperty("game.record") != null) {
+            recorder = new Replay.Recorder(world, Replay.DEFAULT_CHECKSUM_INTERVAL);
+        }
+        return world;
+    }
+
+    private void loadAssets() {
+        background = Assets.image(Assets.BACKGROUND);
+        heartImage = Assets.image(Assets.HEART);
+        frameImage = Assets.image(Assets.FRAME);
+        buttonImage = Assets.image(Assets.BUTTON);
+
+        Font baseFont = Assets.font(Assets.GAME_FONT);
+        if (baseFont != null) {
+            gameFont = baseFont.deriveFont(18f);
+            gameFontBold = baseFont.deriveFont(Font.BOLD, 32f);
+        } else {
             // Use default font as a fallback
             gameFont = new Font("Arial", Font.PLAIN, 18);
             gameFontBold = new Font("Arial", Font.BOLD, 32);
         }
+
+        hudStyle = TextStyle.plain(gameFont, Color.BLACK);
+        gameOverStyle = TextStyle.shadowed(gameFontBold.deriveFont(56f), Color.RED, Color.BLACK, 2);
+        finalScoreStyle = TextStyle.shadowed(gameFont.deriveFont(28f), Color.WHITE, Color.BLACK, 2);
+    }
+
+    /**
+     * Starts the simulation and render threads. The canvas must be displayable so a buffer
+     * strategy can be created.
+     */
+    public void start() {
+        createBufferStrategy(2);
+        simulation.start();
+        renderer.start();
+        requestFocusInWindow();
+    }
+
+    /**
+     * Stops both threads.
+     */
+    public void stop() {
+        renderer.stop();
+        simulation.stop();
     }
 
+    /**
+     * Draws the newest snapshot, interpolated by how long ago it was taken; the loop's alpha is
+     * ignored since the simulation ticks on its own thread.
+     */
     @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+    public void render(double loopAlpha) {
+        BufferStrategy strategy = getBufferStrategy();
+        int width = getWidth();
+        int height = getHeight();
+        if (strategy == null || width <= 0 || height <= 0) return;
+
+        view = snapshots.getReadBuffer();
+        boolean newTick = view.getTick() != lastViewTick;
+        lastViewTick = view.getTick();
+
+        if (profiler.rollWindow()) {
+            statsChanged = true;
+        }
 
-        if (background != null) {
-            g.drawImage(background, 0, 0, getWidth(), getHeight(), this);
-        } else {
-            g.setColor(Color.CYAN);
-            g.fillRect(0, 0, getWidth(), getHeight());
+        GameEvents.Paint event = new GameEvents.Paint();
+        event.begin();
+
+        long t = profiler.start();
+        // Nothing moves on the game-over screen, so don't keep interpolating the last tick.
+        updateFrame(view.isGameOver() ? 1.0 : view.alphaAt(System.nanoTime()), getViewWidth(), getViewHeight());
+        t = profiler.end(Profiler.PAINT, t);
+
+        do {
+            do {
+                Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    if (PIXEL_SCALE > 1) {
+                        presentScaled(g, width, height);
+                    } else {
+                        layers.draw(g, getGraphicsConfiguration(), width, height, cameraX);
+                        g.drawImage(frame, 0, 0, null);
+                    }
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+
+        Toolkit.getDefaultToolkit().sync();
+        input.framePresented(newTick ? view.getInputSince() : 0);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.regions = dirty.getRegionCount();
+            event.fullRedraw = dirty.isFull();
+            event.commit();
         }
 
-        level.draw(g, getWidth());
-        player.draw(g);
-        enemy.draw(g);
-        
-        for (FloatingText text : floatingTexts) {
-            text.draw(g);
+        t = profiler.end(Profiler.PRESENT, t);
+        if (lastPresent != 0) {
+            profiler.record(Profiler.FRAME, t - lastPresent);
+        }
+        lastPresent = t;
+    }
+
+    /**
+     * Scales the frame up to the window by a whole factor, centred with black bars around it,
+     * then draws the HUD over it. Works in device pixels, so the factor takes HiDPI scaling
+     * into account.
+     */
+    private void presentScaled(Graphics2D g, int width, int height) {
+        AffineTransform device = g.getTransform();
+        int deviceWidth = (int) Math.round(width * device.getScaleX());
+        int deviceHeight = (int) Math.round(height * device.getScaleY());
+        int frameWidth = frame.getWidth(null), frameHeight = frame.getHeight(null);
+        int scale = Math.max(1, Math.min(deviceWidth / frameWidth, deviceHeight / frameHeight));
+        int x = (deviceWidth - frameWidth * scale) / 2;
+        int y = (deviceHeight - frameHeight * scale) / 2;
+
+        if (scale != presentScale || x != presentX || y != presentY || device.getScaleX() != presentDeviceScale) {
+            presentScale = scale;
+            presentX = x;
+            presentY = y;
+            presentDeviceScale = device.getScaleX();
+            AffineTransform toView = AffineTransform.getScaleInstance((double) PIXEL_SCALE / scale,
+                    (double) PIXEL_SCALE / scale);
+            toView.translate(-x, -y);
+            toView.scale(device.getScaleX(), device.getScaleY());
+            windowToView = toView;
         }
 
+        g.setTransform(new AffineTransform());
         g.setColor(Color.BLACK);
-        g.setFont(gameFont);
-        g.drawString("Score: " + score.getScore(), 20, 30);
+        g.fillRect(0, 0, deviceWidth, y);
+        g.fillRect(0, y + frameHeight * scale, deviceWidth, deviceHeight);
+        g.fillRect(0, y, x, frameHeight * scale);
+        g.fillRect(x + frameWidth * scale, y, deviceWidth, frameHeight * scale);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        // The background is cached at frame size and scaled up with the frame.
+        g.translate(x, y);
+        g.scale(scale, scale);
+        layers.draw(g, getGraphicsConfiguration(), frameWidth, frameHeight, cameraX / PIXEL_SCALE);
+        g.setTransform(new AffineTransform());
+        g.drawImage(frame, x, y, frameWidth * scale, frameHeight * scale, null);
+
+        g.translate(x, y);
+        g.scale((double) scale / PIXEL_SCALE, (double) scale / PIXEL_SCALE);
+        g.clipRect(0, 0, getViewWidth(), getViewHeight());
+        paintHud(g);
+    }
+
+    /**
+     * Brings the persistent frame image up to date, repainting only the regions that changed.
+     * The view size is in view pixels; the frame is {@link #PIXEL_SCALE} times smaller.
+     */
+    private void updateFrame(double alpha, int width, int height) {
+        int frameWidth = width / PIXEL_SCALE, frameHeight = height / PIXEL_SCALE;
+        if (SOFTWARE_RENDERER) {
+            if (blitter == null || blitter.getWidth() != frameWidth || blitter.getHeight() != frameHeight) {
+                BufferedImage image = new BufferedImage(frameWidth, frameHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+                blitter = new SpriteBlitter(image, PIXEL_SCALE);
+                frame = image;
+                dirty.invalidateAll();
+            }
+        } else {
+            validateVolatileFrame(frameWidth, frameHeight);
+        }
+
+        updateCamera(alpha, width, height);
+        collectDirtyRegions(alpha, width, height);
+        if (blitter != null || PIXEL_SCALE > 1) {
+            sprites.clear();
+            view.getPlayer().addTo(sprites, alpha);
+            view.getEnemies().addTo(sprites, alpha, new Rectangle(cameraX, cameraY, width, height));
+        }
+        if (blitter != null) {
+            blitter.setOrigin(cameraX, cameraY);
+        }
+
+        Graphics2D g = (Graphics2D) frame.getGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            AffineTransform base = g.getTransform();
+            frameTransform = base;
+            for (int i = 0; i < dirty.getRegionCount(); i++) {
+                // Clip to whole frame pixels, so no pixel is left half repainted.
+                int x1 = Math.floorDiv(dirty.getX(i), PIXEL_SCALE);
+                int y1 = Math.floorDiv(dirty.getY(i), PIXEL_SCALE);
+                int x2 = -Math.floorDiv(-(dirty.getX(i) + dirty.getWidth(i)), PIXEL_SCALE);
+                int y2 = -Math.floorDiv(-(dirty.getY(i) + dirty.getHeight(i)), PIXEL_SCALE);
+                g.setTransform(base);
+                g.setClip(x1, y1, x2 - x1, y2 - y1);
+                g.scale(1.0 / PIXEL_SCALE, 1.0 / PIXEL_SCALE);
+                paintScene(g, alpha);
+            }
+        } finally {
+            g.dispose();
+        }
+
+        if (frame instanceof VolatileImage && ((VolatileImage) frame).contentsLost()) {
+            dirty.invalidateAll();
+        }
+    }
+
+    private void validateVolatileFrame(int frameWidth, int frameHeight) {
+        if (!(frame instanceof VolatileImage) || frame.getWidth(null) != frameWidth
+                || frame.getHeight(null) != frameHeight) {
+            frame = getGraphicsConfiguration().createCompatibleVolatileImage(frameWidth, frameHeight,
+                    Transparency.TRANSLUCENT);
+            dirty.invalidateAll();
+        }
+        int status = ((VolatileImage) frame).validate(getGraphicsConfiguration());
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+            frame = getGraphicsConfiguration().createCompatibleVolatileImage(frameWidth, frameHeight,
+                    Transparency.TRANSLUCENT);
+        }
+        if (status != VolatileImage.IMAGE_OK) {
+            dirty.invalidateAll();
+        }
+    }
 
+    /**
+     * Centres the view horizontally on the player, keeping it inside the level, with the
+     * bottom of the level at the bottom of the view. The camera stops on whole frame pixels,
+     * so a horizontal scroll can shift what the frame already shows.
+     */
+    private void updateCamera(double alpha, int width, int height) {
+        Player player = view.getPlayer();
+        int x = player.getDrawX(alpha) + player.getWidth() / 2 - width / 2;
+        x = Math.max(0, Math.min(level.getWidth() - width, x));
+        x -= Math.floorMod(x, PIXEL_SCALE);
+        int y = level.getHeight() - height;
+        if (y != cameraY) {
+            cameraX = x;
+            cameraY = y;
+            dirty.invalidateAll();
+        } else if (x != cameraX) {
+            scrollFrame(cameraX - x, width, height);
+            cameraX = x;
+        }
+    }
+
+    /**
+     * Shifts the frame sideways by {@code dx} view pixels and marks as changed only the strip
+     * that comes into view. The background isn't part of the frame, so its slower parallax
+     * doesn't matter here. The HUD drawn into the frame moved with the rest and is repainted
+     * both where it was carried to and where it belongs.
+     */
+    private void scrollFrame(int dx, int width, int height) {
+        int frameWidth = frame.getWidth(null), frameHeight = frame.getHeight(null);
+        int shift = dx / PIXEL_SCALE;
+        if (Math.abs(shift) >= frameWidth) {
+            dirty.invalidateAll();
+            return;
+        }
+        Graphics2D g = (Graphics2D) frame.getGraphics();
+        try {
+            // Copied as is, so transparent pixels overwrite rather than blend.
+            g.setComposite(AlphaComposite.Src);
+            g.copyArea(Math.max(0, -shift), 0, frameWidth - Math.abs(shift), frameHeight, shift, 0);
+        } finally {
+            g.dispose();
+        }
+
+        dirty.scroll(dx, 0);
+        int left = Math.min(0, dx), grown = Math.abs(dx);
+        dirty.invalidate(dx > 0 ? 0 : width + dx, 0, grown, height);
+        if (PIXEL_SCALE == 1) {
+            dirty.invalidate(left, 0, HUD_WIDTH + grown, HUD_HEIGHT);
+            dirty.invalidate(width - HUD_WIDTH + left, 0, HUD_WIDTH + grown, HUD_HEIGHT);
+            if (statsShown) {
+                dirty.invalidate(STATS_X + left, STATS_Y, STATS_WIDTH + grown, STATS_HEIGHT);
+            }
+            if (hudGameOver) {
+                dirty.invalidateAll();
+            }
+        }
+    }
+
+    private void collectDirtyRegions(double alpha, int width, int height) {
+        dirty.beginFrame(width, height);
+        dirty.setOrigin(cameraX, cameraY);
+
+        view.getPlayer().addBounds(dirty, alpha);
+        view.getEnemies().addBounds(dirty, alpha);
+        view.getParticles().addBounds(dirty, gameFontBold);
+
+        if (view.getScore() != hudScore || view.getLives() != hudLives) {
+            dirty.invalidate(0, 0, HUD_WIDTH, HUD_HEIGHT);
+        }
+        if (renderer.getFramesPerSecond() != hudFps || simulation.getTicksPerSecond() != hudTps
+                || inputLatency() != hudLatency) {
+            dirty.invalidate(width - HUD_WIDTH, 0, HUD_WIDTH, HUD_HEIGHT);
+        }
+        if (view.isGameOver() != hudGameOver) {
+            hudGameOver = view.isGameOver();
+            dirty.invalidateAll();
+        }
+        if (statsVisible != statsShown || (statsShown && statsChanged)) {
+            statsShown = statsVisible;
+            if (statsShown) {
+                updateStatsText();
+            }
+            dirty.invalidate(STATS_X, STATS_Y, STATS_WIDTH, STATS_HEIGHT);
+        }
+
+        dirty.finish();
+    }
+
+    /**
+     * Draws one full frame of the game in view coordinates, without the background, which goes
+     * under the frame when it is presented, and without the HUD when the frame is upscaled.
+     */
+    protected void paintScene(Graphics2D g, double alpha) {
+        int width = getViewWidth(), height = getViewHeight();
+        // Cleared, so the background shows through wherever nothing else is drawn.
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, width, height);
+        g.setComposite(AlphaComposite.SrcOver);
+
+        // The level and everything in it are drawn in level coordinates.
+        g.translate(-cameraX, -cameraY);
+        level.focus(cameraX + width / 2);
+        level.draw(g, cameraX, cameraY, width, height);
+        if (blitter != null) {
+            // The clip is one dirty region, in whole frame pixels.
+            Rectangle clip = g.getClipBounds();
+            blitter.draw(sprites, Math.floorDiv(clip.x - cameraX, PIXEL_SCALE),
+                    Math.floorDiv(clip.y - cameraY, PIXEL_SCALE), clip.width / PIXEL_SCALE, clip.height / PIXEL_SCALE);
+        } else if (PIXEL_SCALE > 1) {
+            // Frames sliced at frame size and drawn unscaled, so sprites stay crisp.
+            AffineTransform transform = g.getTransform();
+            g.setTransform(frameTransform);
+            sprites.draw(g, PIXEL_SCALE, cameraX, cameraY);
+            g.setTransform(transform);
+        } else {
+            view.getPlayer().draw(g, alpha);
+            view.getEnemies().draw(g, alpha);
+        }
+        view.getParticles().draw(g, gameFontBold);
+        g.translate(cameraX, cameraY);
+
+        if (PIXEL_SCALE == 1) {
+            paintHud(g);
+        }
+    }
+
+    /**
+     * Draws the score, lives, rates, stats overlay and game-over screen in view coordinates.
+     */
+    private void paintHud(Graphics2D g) {
+        int score = view.getScore();
+        if (score != hudScore) {
+            hudScore = score;
+            hudScoreSprite = TextCache.shared().get("Score: " + score, hudStyle);
+        }
+        hudScoreSprite.draw(g, 20, 30);
+
+        hudLives = view.getLives();
         if (heartImage != null) {
             int heartSize = 32;
-            for (int i = 0; i < lives; i++) {
+            for (int i = 0; i < hudLives; i++) {
                 g.drawImage(heartImage, 20 + i * (heartSize + 8), 40, heartSize, heartSize, null);
             }
         }
 
-        if (isGameOver) {
-            drawGameOver((Graphics2D) g);
+        if (statsShown) {
+            drawStats(g);
+        }
+
+        int fps = renderer.getFramesPerSecond();
+        int tps = simulation.getTicksPerSecond();
+        int latency = inputLatency();
+        if (fps != hudFps || tps != hudTps || latency != hudLatency) {
+            hudFps = fps;
+            hudTps = tps;
+            hudLatency = latency;
+            hudRatesSprite = TextCache.shared().get(
+                    "FPS: " + fps + "  TPS: " + tps + "  Input: " + latency + " ms", hudStyle);
+        }
+        hudRatesSprite.draw(g, getViewWidth() - hudRatesSprite.getTextWidth() - 20, 30);
+
+        if (view.isGameOver()) {
+            drawGameOver(g);
+        }
+    }
+
+    private void updateStatsText() {
+        statsChanged = false;
+        statsSprites[0] = TextCache.shared().get(String.format(Locale.ROOT,
+                "FPS %d  TPS %d    p50 / p99 / max (ms)", renderer.getFramesPerSecond(),
+                simulation.getTicksPerSecond()),
+                hudStyle);
+        for (int i = 0; i < Profiler.PHASE_COUNT; i++) {
+            statsSprites[i + 1] = TextCache.shared().get(String.format(Locale.ROOT, "%-10s %6.2f  %6.2f  %6.2f",
+                    Profiler.getName(i), profiler.getWindowP50(i) / 1e6, profiler.getWindowP99(i) / 1e6,
+                    profiler.getWindowMax(i) / 1e6), hudStyle);
+        }
+    }
+
+    private void drawStats(Graphics2D g) {
+        g.setColor(STATS_BACKGROUND);
+        g.fillRect(STATS_X, STATS_Y, STATS_WIDTH, STATS_HEIGHT);
+        for (int i = 0; i < statsSprites.length; i++) {
+            statsSprites[i].draw(g, STATS_X + 10, STATS_Y + (i + 1) * STATS_LINE_HEIGHT);
+        }
+    }
+
+    /**
+     * Stops the game and writes the frame-time histograms to {@code <prefix>.csv} and
+     * {@code <prefix>.json}.
+     */
+    public void writeProfile(String prefix) {
+        stop();
+        try {
+            profiler.writeCsv(Paths.get(prefix + ".csv"));
+            profiler.writeJson(Paths.get(prefix + ".json"));
+            System.out.println("Frame-time profile written to " + prefix + ".csv/.json");
+        } catch (IOException e) {
+            System.err.println("Failed to write frame-time profile: " + prefix);
+            e.printStackTrace();
+        }
+    }
+
+    /** @return the view width in level pixels: the window's, or {@link #WIDTH} when upscaling */
+    private int getViewWidth() {
+        return PIXEL_SCALE > 1 ? WIDTH : getWidth();
+    }
+
+    private int getViewHeight() {
+        return PIXEL_SCALE > 1 ? HEIGHT : getHeight();
+    }
+
+    private int inputLatency() {
+        return (int) Math.round(input.getAverageLatencyMillis());
+    }
+
+    private void paintBackground(Graphics2D g, int width, int height) {
+        if (background != null) {
+            g.drawImage(background, 0, 0, width, height, null);
+        } else {
+            g.setColor(Color.CYAN);
+            g.fillRect(0, 0, width, height);
         }
     }
 
     private void drawGameOver(Graphics2D g2) {
-        int panelWidth = getWidth();
-        int panelHeight = getHeight();
+        int panelWidth = getViewWidth();
+        int panelHeight = getViewHeight();
         
         int frameWidth = 650;
         int frameHeight = 550;
@@ -159,27 +717,18 @@ public class GameFrame extends JPanel implements ActionListener, KeyListener {
             g2.drawImage(frameImage, frameX, frameY, frameWidth, frameHeight, null);
         }
         
-        g2.setFont(gameFontBold.deriveFont(56f));
-        FontMetrics fmGameOver = g2.getFontMetrics();
-        String gameOverText = "GAME OVER";
-        int gameOverX = frameX + (frameWidth - fmGameOver.stringWidth(gameOverText)) / 2;
+        TextSprite gameOverText = TextCache.shared().get("GAME OVER", gameOverStyle);
+        int gameOverX = frameX + (frameWidth - gameOverText.getTextWidth()) / 2;
         int gameOverY = frameY + 100;
+        gameOverText.draw(g2, gameOverX, gameOverY);
         
-        g2.setColor(Color.BLACK);
-        g2.drawString(gameOverText, gameOverX + 2, gameOverY + 2);
-        g2.setColor(Color.RED);
-        g2.drawString(gameOverText, gameOverX, gameOverY);
-        
-        g2.setFont(gameFont.deriveFont(28f));
-        FontMetrics fmScore = g2.getFontMetrics();
-        String scoreText = "Score: " + score.getScore();
-        int scoreX = frameX + (frameWidth - fmScore.stringWidth(scoreText)) / 2;
+        if (finalScore != hudScore) {
+            finalScore = hudScore;
+            finalScoreSprite = TextCache.shared().get("Score: " + finalScore, finalScoreStyle);
+        }
+        int scoreX = frameX + (frameWidth - finalScoreSprite.getTextWidth()) / 2;
         int scoreY = gameOverY + 100;
-        
-        g2.setColor(Color.BLACK);
-        g2.drawString(scoreText, scoreX + 2, scoreY + 2);
-        g2.setColor(Color.WHITE);
-        g2.drawString(scoreText, scoreX, scoreY);
+        finalScoreSprite.draw(g2, scoreX, scoreY);
         
         if (buttonImage != null) {
             int buttonWidth = 180;
@@ -187,121 +736,226 @@ public class GameFrame extends JPanel implements ActionListener, KeyListener {
             int buttonX = frameX + (frameWidth - buttonWidth) / 2;
             int buttonY = scoreY + 70;
             
-            buttonBounds = new Rectangle(buttonX, buttonY, buttonWidth, buttonHeight);
+            Rectangle button = buttonBounds;
+            if (button == null || button.x != buttonX || button.y != buttonY) {
+                buttonBounds = new Rectangle(buttonX, buttonY, buttonWidth, buttonHeight);
+            }
             g2.drawImage(buttonImage, buttonX, buttonY, buttonWidth, buttonHeight, null);
         }
     }
 
+    /**
+     * Runs one tick on the simulation thread and publishes what it left to draw.
+     */
     @Override
-    public void actionPerformed(ActionEvent e) {
-        if (isGameOver) return;
-
-        level.updateGroundY(getHeight());
-        player.update(level);
-        enemy.update(level);
-        
-        Iterator<FloatingText> textIterator = floatingTexts.iterator();
-        while (textIterator.hasNext()) {
-            FloatingText text = textIterator.next();
-            text.update();
-            if (!text.isAlive()) {
-                textIterator.remove();
+    public void tick() {
+        GameEvents.Tick event = new GameEvents.Tick();
+        event.begin();
+        long start = profiler.start();
+
+        if (restartRequested) {
+            restartRequested = false;
+            if (world.isGameOver()) {
+                respawnGame();
+            }
+        }
+        if (quickSaveRequested) {
+            quickSaveRequested = false;
+            save(QUICK_SAVE);
+        }
+        if (quickLoadRequested) {
+            quickLoadRequested = false;
+            quickLoad();
+        }
+        int buttons = input.drain();
+        if (playback != null) {
+            stepReplay();
+        } else {
+            world.applyInput(buttons);
+            if (recorder != null) {
+                recorder.recordTick(buttons);
             }
+            world.tick();
+            if (recorder != null) {
+                recorder.afterTick(world);
+            }
+        }
+        // The tick stands still once the game is over, so only save on reaching it.
+        if (autosave != null && playback == null && world.getTick() % AUTOSAVE_TICKS == 0
+                && world.getTick() != lastAutosaveTick) {
+            lastAutosaveTick = world.getTick();
+            save(autosave);
+        }
+        publishSnapshot();
+
+        profiler.end(Profiler.TICK, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.tick = world.getTick();
+            event.activeEnemies = world.getEnemies().getActiveCount();
+            event.commit();
         }
+    }
+
+    private void publishSnapshot() {
+        snapshots.getWriteBuffer().capture(world, input.getDrainedSince());
+        snapshots.publish();
+    }
+
+    @Override
+    public void onJump() {
+        audioManager.playJump();
+    }
 
-        checkCollisions();
-        repaint();
+    @Override
+    public void onEnemyStomped(int enemy) {
+        // Pan the hit towards where the enemy is relative to the player, whom the view follows.
+        EnemyStore enemies = world.getEnemies();
+        Player player = world.getPlayer();
+        float offset = enemies.getHitboxX(enemy) + EnemyStore.HITBOX_WIDTH / 2f
+                - (player.getX() + player.getWidth() / 2f);
+        float pan = offset / Math.max(1, getViewWidth() / 2);
+        audioManager.playEnemyHit(Math.max(-1f, Math.min(1f, pan)));
     }
 
-    private void checkCollisions() {
-        if (!enemy.isAlive() || !player.getBounds().intersects(enemy.getBounds())) {
+    /**
+     * Advances the replay by {@code replaySpeed} ticks, handing control back to the keyboard
+     * once it ends.
+     */
+    private void stepReplay() {
+        try {
+            for (int i = 0; i < replaySpeed; i++) {
+                if (!playback.step(world)) break;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Replay stopped at tick " + world.getTick() + ": " + e.getMessage());
+            playback = null;
             return;
         }
+        if (playback.isFinished()) {
+            System.out.printf("Replay finished at tick %d: %d checksums verified%s%n", world.getTick(),
+                    playback.getChecksumsVerified(),
+                    playback.getDivergedAt() >= 0 ? ", diverged at tick " + playback.getDivergedAt() : "");
+            playback = null;
+        }
+    }
 
-        if (player.getDY() > 0 && player.getBounds().y + player.getBounds().height < enemy.getBounds().y + 20) {
-            enemy.die();
-            score.addScore(100);
-            score.addKill();
-            player.bounce();
-            audioManager.playEnemyHit();
-            
-            String killText = "+" + score.getKillCount() + " Kill";
-            floatingTexts.add(new FloatingText(killText, enemy.getBounds().x, enemy.getBounds().y, 60, Color.YELLOW, gameFontBold));
-
-            if (!enemyRespawning) {
-                enemyRespawning = true;
-                Timer respawnTimer = new Timer(1000, ev -> {
-                    enemy.respawn(level);
-                    enemyRespawning = false;
-                });
-                respawnTimer.setRepeats(false);
-                respawnTimer.start();
+    /**
+     * Captures the world and hands it to the save writer. Simulation thread only, or once it
+     * has stopped. The captured buffer belongs to the writer until it is written, so the next
+     * capture goes into the spare buffer, or a new one while the writer is still busy.
+     */
+    private void save(Path path) {
+        ByteBuffer state = SaveState.capture(world, spareSaveBuffer.getAndSet(null));
+        lastSave = saveWriter.submit(() -> {
+            try {
+                SaveState.write(state, path);
+            } catch (IOException e) {
+                System.err.println("Failed to save game: " + path);
+                e.printStackTrace();
             }
-        } else {
-            player.takeHit();
-            loseLife();
-        }
+            spareSaveBuffer.set(state);
+        });
     }
 
-    private void loseLife() {
-        lives--;
-        if (lives <= 0) {
-            lives = 0;
-            gameOver();
-        } else {
-            enemy.respawn(level);
+    /**
+     * Continues from the quick-save. Not while recording or playing a replay, since the
+     * replay could not follow the jump.
+     */
+    private void quickLoad() {
+        if (recorder != null || playback != null) {
+            System.out.println("Quick load is disabled while recording or playing a replay");
+            return;
+        }
+        try {
+            if (lastSave != null) {
+                lastSave.get(); // A quick-save just made may still be on its way to disk
+            }
+            SaveState.restore(world, SaveState.read(QUICK_SAVE));
+            buttonBounds = null;
+        } catch (IOException | IllegalArgumentException | ExecutionException e) {
+            System.err.println("Failed to load game: " + QUICK_SAVE);
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private void gameOver() {
-        isGameOver = true;
-        timer.stop();
+    /**
+     * Stops the game and saves the run for the next launch to resume, then waits for every
+     * save to reach the disk. The exit save is skipped if the simulation thread does not stop,
+     * since it would still be changing the world.
+     */
+    public void saveOnExit() {
+        if (autosave == null) return;
+        renderer.stop();
+        if (simulation.stop(EXIT_TIMEOUT_MILLIS)) {
+            save(autosave);
+        } else {
+            System.err.println("Simulation did not stop; run not saved on exit");
+        }
+        saveWriter.shutdown();
+        try {
+            if (!saveWriter.awaitTermination(EXIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                System.err.println("Save still being written on exit: " + autosave);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private void respawnGame() {
-        lives = 3;
-        isGameOver = false;
-
-        int groundY = level.getGroundY();
-        player = new Player(100, groundY - 60);
-        enemy.respawn(level);
-        score.reset();
-        floatingTexts.clear();
-
-        enemyRespawning = false;
+        if (playback != null) return;
+        world.restart();
         buttonBounds = null;
-        timer.start();
+        if (recorder != null) {
+            recorder.recordRestart();
+        }
+    }
+
+    /**
+     * Stops the game and writes everything recorded so far to a replay file.
+     */
+    public void saveRecording(String path) {
+        if (recorder == null) return;
+        stop();
+        try {
+            recorder.save(Paths.get(path));
+            System.out.println("Replay written to " + path);
+        } catch (IOException e) {
+            System.err.println("Failed to write replay: " + path);
+            e.printStackTrace();
+        }
     }
 
     @Override
     public void keyPressed(KeyEvent e) {
-        int code = e.getKeyCode();
-
-        if (code == KeyEvent.VK_RIGHT || code == KeyEvent.VK_D) {
-            player.moveRight();
-        } else if (code == KeyEvent.VK_LEFT || code == KeyEvent.VK_A) {
-            player.moveLeft();
-        } else if (code == KeyEvent.VK_SPACE || code == KeyEvent.VK_W || code == KeyEvent.VK_UP) {
-            if (player.isOnGround()) {
-                player.jump();
-                audioManager.playJump();
-            }
+        if (e.getKeyCode() == KeyEvent.VK_F3) {
+            statsVisible = !statsVisible;
+            return;
         }
+        if (e.getKeyCode() == KeyEvent.VK_F5) {
+            quickSaveRequested = true;
+            return;
+        }
+        if (e.getKeyCode() == KeyEvent.VK_F9) {
+            quickLoadRequested = true;
+            return;
+        }
+        input.record(e.getKeyCode(), true);
     }
 
     @Override
     public void keyReleased(KeyEvent e) {
-        int code = e.getKeyCode();
-        if (code == KeyEvent.VK_RIGHT || code == KeyEvent.VK_D ||
-            code == KeyEvent.VK_LEFT || code == KeyEvent.VK_A) {
-            player.stop();
-        }
+        input.record(e.getKeyCode(), false);
     }
-    
+
     @Override
     public void keyTyped(KeyEvent e) {}
 
     public static void main(String[] args) {
+        Assets.preload();
+
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Mini Mario Bros");
             GameFrame game = new GameFrame();
@@ -311,6 +965,17 @@ public class GameFrame extends JPanel implements ActionListener, KeyListener {
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
             frame.setResizable(true);
             frame.setVisible(true);
+            game.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(game::saveOnExit));
+
+            String profile = System.getProperty("game.profile");
+            if (profile != null) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> game.writeProfile(profile)));
+            }
+            String record = System.getProperty("game.record");
+            if (record != null) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> game.saveRecording(record)));
+            }
         });
     }
 }
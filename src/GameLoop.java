@@ -0,0 +1,193 @@
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.DisplayMode;
+
+/**
+ * Fixed-timestep game loop running on its own thread.
+ * The simulation advances in constant steps taken from an accumulator, while frames are
+ * rendered as often as the target frame rate allows, interpolating between the last two
+ * simulation states. A game can also tick on one loop and render on another made with
+ * {@link #renderOnly}.
+ */
+public class GameLoop implements Runnable {
+
+    /**
+     * Callbacks driven by the loop.
+     */
+    public interface Game {
+        void tick();
+
+        /**
+         * @param alpha how far the current frame lies between the previous tick (0) and the latest tick (1).
+         */
+        void render(double alpha);
+    }
+
+    /** Simulation rate. All physics constants in Player and Enemy are expressed per tick at this rate. */
+    public static final int TICK_RATE = 50;
+    public static final long TICK_NANOS = 1_000_000_000L / TICK_RATE;
+
+    // Upper bound on catch-up ticks per frame, so a long stall does not snowball.
+    private static final int MAX_TICKS_PER_FRAME = 5;
+    private static final long SPIN_THRESHOLD_NANOS = 1_500_000L;
+
+    private final Game game;
+    private final long frameNanos;
+    private final boolean ticking;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    private volatile int ticksPerSecond;
+    private volatile int framesPerSecond;
+
+    /**
+     * @param game       the game to drive
+     * @param targetFps  frames per second to render at, or 0 to render as fast as possible
+     */
+    public GameLoop(Game game, int targetFps) {
+        this(game, targetFps, true);
+    }
+
+    private GameLoop(Game game, int targetFps, boolean ticking) {
+        this.game = game;
+        this.frameNanos = targetFps > 0 ? 1_000_000_000L / targetFps : 0;
+        this.ticking = ticking;
+    }
+
+    /**
+     * Creates a loop that never calls {@link Game#tick}, for a game whose simulation runs on a
+     * loop of its own. {@link Game#render} is passed an alpha of 1; the game works out how far
+     * it is between ticks itself.
+     */
+    public static GameLoop renderOnly(Game game, int targetFps) {
+        return new GameLoop(game, targetFps, false);
+    }
+
+    /**
+     * Reads the target frame rate from the {@code game.fps} system property, falling back to
+     * the refresh rate of the default screen, or 60 when that is unknown.
+     */
+    public static int configuredFps() {
+        Integer fps = Integer.getInteger("game.fps");
+        if (fps != null) {
+            return Math.max(0, fps);
+        }
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsDevice device = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+            int refresh = device.getDisplayMode().getRefreshRate();
+            if (refresh != DisplayMode.REFRESH_RATE_UNKNOWN && refresh > 0) {
+                return refresh;
+            }
+        }
+        return 60;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this, ticking ? "game-loop" : "render-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        stop(500);
+    }
+
+    /**
+     * Stops the loop and waits up to {@code timeoutMillis} for its thread to exit, forever if 0.
+     *
+     * @return true if the thread has exited, so the game is no longer touched by it
+     */
+    public synchronized boolean stop(long timeoutMillis) {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            if (thread != Thread.currentThread()) {
+                try {
+                    thread.join(timeoutMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (thread.isAlive()) return false;
+            thread = null;
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long nextFrame = previous;
+
+        long counterStart = previous;
+        int ticks = 0;
+        int frames = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            accumulator += now - previous;
+            previous = now;
+
+            if (accumulator > TICK_NANOS * MAX_TICKS_PER_FRAME) {
+                accumulator = TICK_NANOS * MAX_TICKS_PER_FRAME;
+            }
+
+            while (ticking && accumulator >= TICK_NANOS) {
+                game.tick();
+                accumulator -= TICK_NANOS;
+                ticks++;
+            }
+
+            game.render(ticking ? (double) accumulator / TICK_NANOS : 1.0);
+            frames++;
+
+            now = System.nanoTime();
+            if (now - counterStart >= 1_000_000_000L) {
+                ticksPerSecond = ticks;
+                framesPerSecond = frames;
+                ticks = 0;
+                frames = 0;
+                counterStart = now;
+            }
+
+            if (frameNanos > 0) {
+                nextFrame += frameNanos;
+                if (nextFrame < now - frameNanos) {
+                    // We fell far behind; resynchronise instead of rendering a burst of frames.
+                    nextFrame = now;
+                }
+                waitUntil(nextFrame);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private void waitUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        while (remaining > 0 && running) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                try {
+                    Thread.sleep((remaining - SPIN_THRESHOLD_NANOS) / 1_000_000L);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            } else {
+                Thread.onSpinWait();
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    public int getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    public int getFramesPerSecond() {
+        return framesPerSecond;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Small, fast, seedable random number generator (SplitMix64) for gameplay.
+ * All randomness in the simulation comes from one instance owned by the {@link World}, so a
+ * seed plus the recorded input reproduces a session exactly. The whole state is a single
+ * long, which can be read and restored with {@link #getState}/{@link #setState}.
+ */
+public final class GameRandom {
+
+    private long state;
+
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    public long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return a value from 0 (inclusive) to {@code bound} (exclusive), or 0 if bound is not positive
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) return 0;
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+}
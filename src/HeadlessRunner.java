@@ -0,0 +1,168 @@
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays many games back to back without a display, driven by scripted input, and reports
+ * throughput. Meant for CI and balancing runs on machines without an X server.
+ *
+ * Game {@code i} of a batch is seeded with {@code i}, so every run of the same batch plays the
+ * same games. A single game can also be recorded to a {@link Replay} file, and a replay file
+ * played back at full speed with its checksums verified.
+ *
+ * <pre>
+ * java -Djava.awt.headless=true HeadlessRunner [games] [maxTicks] [enemies] [threads]
+ * java -Djava.awt.headless=true HeadlessRunner record &lt;file&gt; [maxTicks] [enemies] [seed]
+ * java -Djava.awt.headless=true HeadlessRunner replay &lt;file&gt;
+ * </pre>
+ */
+public class HeadlessRunner {
+
+    /**
+     * Supplies the buttons held on each tick, as a combination of the {@code World.INPUT_*} bits.
+     */
+    public interface Script {
+        int buttonsAt(long tick);
+    }
+
+    /**
+     * Walks back and forth across the level and jumps at a steady rhythm.
+     */
+    public static final Script PATROL = tick -> {
+        int buttons = ((tick / 150) % 2 == 0) ? World.INPUT_RIGHT : World.INPUT_LEFT;
+        if (tick % 37 == 0) {
+            buttons |= World.INPUT_JUMP;
+        }
+        return buttons;
+    };
+
+    /**
+     * Result of one simulated game.
+     */
+    public static final class Result {
+        public final long ticks;
+        public final int score;
+        public final int kills;
+        public final boolean gameOver;
+
+        Result(long ticks, int score, int kills, boolean gameOver) {
+            this.ticks = ticks;
+            this.score = score;
+            this.kills = kills;
+            this.gameOver = gameOver;
+        }
+    }
+
+    /**
+     * Runs one game until game over or {@code maxTicks}, whichever comes first.
+     */
+    public static Result play(World world, Script script, int maxTicks) {
+        return play(world, script, maxTicks, null);
+    }
+
+    /**
+     * Runs one game, recording its input if {@code recorder} is not null.
+     */
+    public static Result play(World world, Script script, int maxTicks, Replay.Recorder recorder) {
+        while (world.getTick() < maxTicks && !world.isGameOver()) {
+            int buttons = script.buttonsAt(world.getTick());
+            world.applyInput(buttons);
+            if (recorder != null) {
+                recorder.recordTick(buttons);
+            }
+            world.tick();
+            if (recorder != null) {
+                recorder.afterTick(world);
+            }
+        }
+        return new Result(world.getTick(), world.getScore().getScore(), world.getScore().getKillCount(),
+                world.isGameOver());
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 1 && args[0].equals("record")) {
+            record(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("replay")) {
+            replay(args[1]);
+            return;
+        }
+
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int maxTicks = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+        int enemies = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<Result>> futures = new ArrayList<>(games);
+        for (int i = 0; i < games; i++) {
+            long seed = i;
+            futures.add(pool.submit(() -> play(new World(enemies, seed), PATROL, maxTicks)));
+        }
+
+        long totalTicks = 0;
+        long totalScore = 0;
+        int gameOvers = 0;
+        try {
+            for (Future<Result> future : futures) {
+                Result result = future.get();
+                totalTicks += result.ticks;
+                totalScore += result.score;
+                if (result.gameOver) gameOvers++;
+            }
+        } finally {
+            // A failed game must not leave the worker threads keeping the JVM alive.
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Games:        %d (%d game over, %d hit the tick limit)%n", games, gameOvers, games - gameOvers);
+        System.out.printf("Ticks:        %d (%.1f simulated minutes)%n", totalTicks,
+                totalTicks / (double) GameLoop.TICK_RATE / 60.0);
+        System.out.printf("Elapsed:      %.2f s on %d threads%n", seconds, threads);
+        System.out.printf("Throughput:   %.0f games/min, %.0f ticks/s%n", games / seconds * 60.0, totalTicks / seconds);
+        System.out.printf("Mean score:   %.1f%n", totalScore / (double) games);
+    }
+
+    private static void record(String[] args) throws Exception {
+        String file = args[1];
+        int maxTicks = args.length > 2 ? Integer.parseInt(args[2]) : 3000;
+        int enemies = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+        World world = new World(enemies, seed);
+        Replay.Recorder recorder = new Replay.Recorder(world, Replay.DEFAULT_CHECKSUM_INTERVAL);
+        Result result = play(world, PATROL, maxTicks, recorder);
+        byte[] bytes = recorder.toByteArray();
+        recorder.save(Paths.get(file));
+
+        System.out.printf("Recorded %d ticks (score %d) to %s: %d bytes, %.2f bytes/tick%n",
+                result.ticks, result.score, file, bytes.length, bytes.length / (double) result.ticks);
+    }
+
+    private static void replay(String file) throws Exception {
+        Replay.Playback playback = Replay.Playback.load(Paths.get(file));
+        World world = playback.createWorld();
+
+        long start = System.nanoTime();
+        long ticks = 0;
+        while (playback.step(world)) {
+            ticks++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Replayed %d ticks in %.1f ms (%.0fx real time), score %d%n", ticks, seconds * 1e3,
+                ticks / (double) GameLoop.TICK_RATE / seconds, world.getScore().getScore());
+        if (playback.getDivergedAt() >= 0) {
+            System.out.println("DIVERGED at tick " + playback.getDivergedAt());
+            System.exit(1);
+        }
+        System.out.printf("%d checksums verified, every %d ticks%n", playback.getChecksumsVerified(),
+                playback.getChecksumInterval());
+    }
+}
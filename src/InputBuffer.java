@@ -0,0 +1,184 @@
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects key events from the event dispatch thread and hands them to the simulation once per
+ * tick. Events are stamped with {@link System#nanoTime()} and stored in a lock-free
+ * single-producer, single-consumer ring. The simulation drains the ring at the start of each
+ * tick into a pressed-key bitset and resolves it into {@code World.INPUT_*} buttons, so input
+ * never changes the world halfway through a tick.
+ * <p>
+ * The buffer also measures input latency: the time from the oldest event consumed by a tick
+ * until the first frame showing that tick is on screen. The simulation passes
+ * {@link #getDrainedSince()} along with the tick to whoever presents it.
+ */
+public class InputBuffer {
+
+    private static final int CAPACITY = 1024; // Power of two
+    private static final int MAX_KEY_CODE = 256;
+    private static final int RELEASE_ALL = -1;
+
+    // Ring written by the event thread, read by the simulation thread.
+    private final int[] codes = new int[CAPACITY];
+    private final boolean[] pressed = new boolean[CAPACITY];
+    private final long[] times = new long[CAPACITY];
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private volatile int dropped;
+
+    // Simulation-side state.
+    private final long[] held = new long[MAX_KEY_CODE / 64];
+    private int lastDirection = World.INPUT_RIGHT;
+    private boolean jumpPressed;
+
+    private long drainedSince; // Oldest event of the latest drain, or 0
+
+    // Latency between the oldest event of a tick and the frame that shows it; presenting side.
+    private long latencySum, latencyCount, latencyMax;
+    private long windowStart = System.nanoTime();
+    private volatile double averageLatencyMillis;
+    private volatile double maxLatencyMillis;
+
+    /**
+     * Records a key event. Called on the event dispatch thread; never blocks. If the simulation
+     * has fallen more than {@value #CAPACITY} events behind, the event is dropped.
+     */
+    public void record(int keyCode, boolean isPressed) {
+        long t = tail.get();
+        if (t - head.get() == CAPACITY) {
+            dropped++;
+            return;
+        }
+        int index = (int) (t & (CAPACITY - 1));
+        codes[index] = keyCode;
+        pressed[index] = isPressed;
+        times[index] = System.nanoTime();
+        tail.lazySet(t + 1);
+    }
+
+    /**
+     * Consumes every event recorded so far. Call once at the start of each tick.
+     *
+     * @return the buttons held for this tick, as {@code World.INPUT_*} bits
+     */
+    public int drain() {
+        jumpPressed = false;
+        drainedSince = 0;
+
+        long h = head.get();
+        long t = tail.get();
+        for (; h < t; h++) {
+            int index = (int) (h & (CAPACITY - 1));
+            int code = codes[index];
+            if (drainedSince == 0) {
+                drainedSince = times[index];
+            }
+
+            if (code == RELEASE_ALL) {
+                Arrays.fill(held, 0);
+                continue;
+            }
+            if (code < 0 || code >= MAX_KEY_CODE) continue;
+            if (pressed[index]) {
+                held[code >>> 6] |= 1L << code;
+                if (isRight(code)) lastDirection = World.INPUT_RIGHT;
+                else if (isLeft(code)) lastDirection = World.INPUT_LEFT;
+                else if (isJump(code)) jumpPressed = true;
+            } else {
+                held[code >>> 6] &= ~(1L << code);
+            }
+        }
+        head.lazySet(h);
+
+        return buttons();
+    }
+
+    private int buttons() {
+        boolean right = isHeld(KeyEvent.VK_RIGHT) || isHeld(KeyEvent.VK_D);
+        boolean left = isHeld(KeyEvent.VK_LEFT) || isHeld(KeyEvent.VK_A);
+
+        int buttons = 0;
+        if (right && left) {
+            // Both held: the most recently pressed direction wins.
+            buttons |= lastDirection;
+        } else if (right) {
+            buttons |= World.INPUT_RIGHT;
+        } else if (left) {
+            buttons |= World.INPUT_LEFT;
+        }
+        // Jump on key presses (including auto-repeat), like the old key handler did.
+        if (jumpPressed) {
+            buttons |= World.INPUT_JUMP;
+        }
+        return buttons;
+    }
+
+    public boolean isHeld(int keyCode) {
+        return keyCode >= 0 && keyCode < MAX_KEY_CODE && (held[keyCode >>> 6] & (1L << keyCode)) != 0;
+    }
+
+    /**
+     * Records a release of every key, e.g. when the window loses focus and release events would
+     * be missed. Called on the event dispatch thread.
+     */
+    public void releaseAll() {
+        record(RELEASE_ALL, false);
+    }
+
+    /**
+     * @return time of the oldest event the latest {@link #drain} consumed, or 0 if it consumed none
+     */
+    public long getDrainedSince() {
+        return drainedSince;
+    }
+
+    /**
+     * Call right after a frame has been presented, always from the same thread.
+     *
+     * @param inputSince {@link #getDrainedSince()} of the tick the frame is the first to show,
+     *                   or 0 if it shows no new tick
+     */
+    public void framePresented(long inputSince) {
+        long now = System.nanoTime();
+        if (inputSince != 0) {
+            long latency = now - inputSince;
+            latencySum += latency;
+            latencyCount++;
+            latencyMax = Math.max(latencyMax, latency);
+        }
+        if (now - windowStart >= 1_000_000_000L) {
+            averageLatencyMillis = latencyCount > 0 ? latencySum / 1e6 / latencyCount : 0;
+            maxLatencyMillis = latencyMax / 1e6;
+            latencySum = latencyCount = latencyMax = 0;
+            windowStart = now;
+        }
+    }
+
+    /**
+     * @return mean input-to-frame latency over the last second, or 0 if there was no input
+     */
+    public double getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    public int getDroppedEvents() {
+        return dropped;
+    }
+
+    private static boolean isRight(int code) {
+        return code == KeyEvent.VK_RIGHT || code == KeyEvent.VK_D;
+    }
+
+    private static boolean isLeft(int code) {
+        return code == KeyEvent.VK_LEFT || code == KeyEvent.VK_A;
+    }
+
+    private static boolean isJump(int code) {
+        return code == KeyEvent.VK_SPACE || code == KeyEvent.VK_W || code == KeyEvent.VK_UP;
+    }
+}
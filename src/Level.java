@@ -1,46 +1,182 @@
-import javax.swing.*;
 import java.awt.*;
-import java.net.URL;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 /**
- * Manages the game's ground level.
+ * One world's view of a {@link TileMap}. The chunks around a focus point, normally the player,
+ * are copied into a fixed set of resident buffers and evicted again as the focus moves on, so
+ * memory use stays the same for a level of any width. Tiles outside the resident window are
+ * read straight from the mapped file.
+ * <p>
+ * Everything outside the map counts as solid except the sky above it, so the map edges act
+ * as walls.
  */
 public class Level {
-    private int groundSurfaceY;
-    private final int groundHeight = 250;
-    private final int surfaceThickness = 85;
-    private Image groundImage;
+
+    private static final int RESIDENT_CHUNKS = 6;
+
+    private final TileMap map;
+    private final int tileSize;
+    private final int width, height; // In tiles
+    private final int chunkWidth;
+
+    private final byte[][] resident = new byte[RESIDENT_CHUNKS][];
+    private final int[] residentChunk = new int[RESIDENT_CHUNKS];
+    private final int[] chunkSlot; // Resident slot of each chunk, or -1
+    private int focusChunk = -1;
+
+    private Image[] tileImages; // Indexed by tile id, rendered on first draw
 
     public Level() {
-        try {
-            URL groundUrl = getClass().getResource("/assets/Ground.png");
-            if (groundUrl != null) {
-                groundImage = new ImageIcon(groundUrl).getImage();
+        this(TileMap.defaultMap());
+    }
+
+    public Level(TileMap map) {
+        this.map = map;
+        tileSize = map.getTileSize();
+        width = map.getWidth();
+        height = map.getHeight();
+        chunkWidth = map.getChunkWidth();
+
+        for (int i = 0; i < RESIDENT_CHUNKS; i++) {
+            resident[i] = new byte[chunkWidth * height];
+        }
+        Arrays.fill(residentChunk, -1);
+        chunkSlot = new int[map.getChunkCount()];
+        Arrays.fill(chunkSlot, -1);
+    }
+
+    /**
+     * Keeps the chunks around a horizontal pixel position resident, evicting the rest.
+     * Cheap when the position stays within the same chunk.
+     */
+    public void focus(int px) {
+        int chunk = Math.max(0, Math.min(chunkSlot.length - 1, px / (tileSize * chunkWidth)));
+        if (chunk == focusChunk) return;
+        focusChunk = chunk;
+
+        int first = Math.max(0, Math.min(chunkSlot.length - RESIDENT_CHUNKS, chunk - RESIDENT_CHUNKS / 2));
+        int last = Math.min(chunkSlot.length, first + RESIDENT_CHUNKS) - 1;
+
+        // Evict chunks that fell out of the window.
+        for (int slot = 0; slot < RESIDENT_CHUNKS; slot++) {
+            int c = residentChunk[slot];
+            if (c >= 0 && (c < first || c > last)) {
+                chunkSlot[c] = -1;
+                residentChunk[slot] = -1;
             }
-        } catch (Exception e) {
-            System.err.println("Failed to load ground image.");
-            groundImage = null;
+        }
+        // Load the ones that came into it.
+        for (int c = first; c <= last; c++) {
+            if (chunkSlot[c] >= 0) continue;
+            int slot = 0;
+            while (residentChunk[slot] >= 0) slot++;
+            map.copyChunk(c, resident[slot]);
+            residentChunk[slot] = c;
+            chunkSlot[c] = slot;
         }
     }
 
     /**
-     * Draws the ground, stretching to the panel's width.
+     * @return the tile id at a tile position; outside the map this is AIR above and DIRT elsewhere
      */
-    public void draw(Graphics g, int panelWidth) {
-        if (groundImage == null) return;
+    public int tileAt(int tx, int ty) {
+        if (ty < 0) return TileMap.AIR;
+        if (tx < 0 || tx >= width || ty >= height) return TileMap.DIRT;
+        int slot = chunkSlot[tx / chunkWidth];
+        if (slot >= 0) {
+            return resident[slot][(tx % chunkWidth) * height + ty];
+        }
+        return map.tileAt(tx, ty);
+    }
 
-        int yDraw = groundSurfaceY - (groundHeight - surfaceThickness);
-        g.drawImage(groundImage, 0, yDraw, panelWidth, groundHeight, null);
+    public boolean isSolid(int px, int py) {
+        return tileAt(Math.floorDiv(px, tileSize), Math.floorDiv(py, tileSize)) != TileMap.AIR;
     }
 
-    public int getGroundY() {
-        return groundSurfaceY;
+    /**
+     * @return the y of the top of the highest solid tile in the column holding {@code px}
+     */
+    public int surfaceY(int px) {
+        int tx = Math.floorDiv(px, tileSize);
+        for (int ty = 0; ty < height; ty++) {
+            if (tileAt(tx, ty) != TileMap.AIR) {
+                return ty * tileSize;
+            }
+        }
+        return height * tileSize;
     }
 
     /**
-     * Updates the ground's Y position based on the panel's height.
+     * Draws the tiles that intersect both the clip and the given view rectangle, in level pixels.
      */
-    public void updateGroundY(int panelHeight) {
-        groundSurfaceY = panelHeight - surfaceThickness;
+    public void draw(Graphics g, int viewX, int viewY, int viewWidth, int viewHeight) {
+        if (tileImages == null) {
+            tileImages = createTileImages();
+        }
+
+        Rectangle clip = g.getClipBounds();
+        int x1 = viewX, y1 = viewY, x2 = viewX + viewWidth, y2 = viewY + viewHeight;
+        if (clip != null) {
+            x1 = Math.max(x1, clip.x);
+            y1 = Math.max(y1, clip.y);
+            x2 = Math.min(x2, clip.x + clip.width);
+            y2 = Math.min(y2, clip.y + clip.height);
+        }
+
+        int tx1 = Math.max(0, Math.floorDiv(x1, tileSize));
+        int ty1 = Math.max(0, Math.floorDiv(y1, tileSize));
+        int tx2 = Math.min(width - 1, Math.floorDiv(x2 - 1, tileSize));
+        int ty2 = Math.min(height - 1, Math.floorDiv(y2 - 1, tileSize));
+        for (int tx = tx1; tx <= tx2; tx++) {
+            for (int ty = ty1; ty <= ty2; ty++) {
+                Image image = tileImages[tileAt(tx, ty)];
+                if (image != null) {
+                    g.drawImage(image, tx * tileSize, ty * tileSize, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cuts grass and dirt tiles out of the ground strip image, scaled to the tile size.
+     */
+    private Image[] createTileImages() {
+        Image[] images = new Image[3];
+        Image ground = Assets.image(Assets.GROUND);
+        if (ground == null) return images;
+
+        // In Ground.png the grass surface starts at y=202, below a strip of sky, and plain dirt fills the bottom.
+        images[TileMap.GRASS] = cut(ground, 202);
+        images[TileMap.DIRT] = cut(ground, 260);
+        return images;
+    }
+
+    private Image cut(Image source, int sourceY) {
+        BufferedImage tile = SpriteCache.createCompatibleImage(tileSize, tileSize);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.drawImage(source, 0, 0, tileSize, tileSize, 0, sourceY, 64, sourceY + 64, null);
+        } finally {
+            g.dispose();
+        }
+        return tile;
+    }
+
+    public TileMap getMap() { return map; }
+    public int getTileSize() { return tileSize; }
+
+    /** Width of the level in pixels. */
+    public int getWidth() { return width * tileSize; }
+
+    /** Height of the level in pixels. */
+    public int getHeight() { return height * tileSize; }
+
+    public int getResidentChunkCount() {
+        int count = 0;
+        for (int c : residentChunk) {
+            if (c >= 0) count++;
+        }
+        return count;
     }
 }
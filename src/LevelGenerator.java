@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Generates rolling grassland levels: ground that steps up and down one tile at a time, with
+ * the odd block to jump over. Every step is low enough to jump, and the same seed always
+ * gives the same level.
+ *
+ * <pre>
+ * java LevelGenerator &lt;file&gt; [widthTiles] [seed]
+ * </pre>
+ */
+public final class LevelGenerator {
+
+    public static final int DEFAULT_WIDTH = 20000;
+    public static final long DEFAULT_SEED = 1;
+
+    public static final int TILE_SIZE = 60;
+    public static final int HEIGHT = World.HEIGHT / TILE_SIZE; // 17 rows
+    public static final int CHUNK_WIDTH = 64;
+
+    private static final int START_COLUMNS = 32; // Flat ground where the player starts
+    private static final int MIN_GROUND = 2, MAX_GROUND = 5;
+
+    private LevelGenerator() {}
+
+    /**
+     * @return {@code width * HEIGHT} tile ids, column by column
+     */
+    public static byte[] generate(int width, long seed) {
+        GameRandom random = new GameRandom(seed);
+        byte[] tiles = new byte[width * HEIGHT];
+
+        int ground = MIN_GROUND;
+        int nextStep = START_COLUMNS;
+        int lastStep = 0;
+        for (int x = 0; x < width; x++) {
+            if (x == nextStep) {
+                ground += random.nextBoolean() ? 1 : -1;
+                ground = Math.max(MIN_GROUND, Math.min(MAX_GROUND, ground));
+                lastStep = x;
+                nextStep = x + 6 + random.nextInt(15);
+            }
+
+            int surface = HEIGHT - ground;
+            int column = x * HEIGHT;
+            tiles[column + surface] = TileMap.GRASS;
+            for (int y = surface + 1; y < HEIGHT; y++) {
+                tiles[column + y] = TileMap.DIRT;
+            }
+
+            // A one-tile block on flat ground, well clear of steps so it never makes a wall two tiles high.
+            if (x > START_COLUMNS && x - lastStep > 2 && nextStep - x > 2 && random.nextInt(40) == 0) {
+                tiles[column + surface] = TileMap.DIRT;
+                tiles[column + surface - 1] = TileMap.GRASS;
+            }
+        }
+        return tiles;
+    }
+
+    public static void write(Path path, int width, long seed) throws IOException {
+        TileMap.write(path, TILE_SIZE, width, HEIGHT, CHUNK_WIDTH, generate(width, seed));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java LevelGenerator <file> [widthTiles] [seed]");
+            return;
+        }
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WIDTH;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        write(Paths.get(args[0]), width, seed);
+        System.out.printf("Wrote %d x %d tile level to %s%n", width, HEIGHT, args[0]);
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Client side of {@link NetServer}. The local player is predicted: every input moves a local
+ * copy of the player straight away with the same physics the server runs. When a snapshot
+ * arrives, the copy is reset to the server's state for the last input the server applied and
+ * the inputs it has not seen yet are replayed on top, so the player only jumps when the
+ * server disagrees, such as when an enemy hits it. Everything else is shown as the server
+ * last sent it.
+ * <p>
+ * Not thread-safe: call {@link #tick} and {@link #poll} from one thread.
+ */
+public class NetClient {
+
+    private static final int INPUT_HISTORY = 64;
+    private static final int SNAPSHOTS = 32; // Received snapshots kept as delta baselines
+    private static final int HELLO_INTERVAL = GameLoop.TICK_RATE / 2;
+
+    private final DatagramChannel channel;
+    private final Level level;
+
+    private int playerIndex = -1;
+    private boolean rejected;
+    private Player predicted;
+
+    private final int[] inputs = new int[INPUT_HISTORY]; // Buttons by sequence number
+    private long nextSeq;
+    private long predictedTick;
+    private int helloCountdown;
+
+    private final int[][] snapshots = new int[SNAPSHOTS][];
+    private final int[] snapshotTicks = new int[SNAPSHOTS];
+    private int[] latest;
+    private int latestTick = -1;
+
+    private final ByteBuffer in = ByteBuffer.allocateDirect(NetServer.MAX_PACKET);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(64);
+
+    // Statistics
+    private long bytesSent, bytesReceived;
+    private long snapshotsReceived, corrections;
+
+    /**
+     * Opens a socket towards the server and starts saying hello. The client plays on the
+     * default level map, which must be the same one the server runs.
+     */
+    public NetClient(InetSocketAddress server) throws IOException {
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(server);
+        level = new Level(TileMap.defaultMap());
+        java.util.Arrays.fill(snapshotTicks, -1);
+    }
+
+    /**
+     * Sends this tick's buttons to the server and applies them to the predicted player. Until
+     * the server has answered, repeats the hello instead.
+     */
+    public void tick(int buttons) throws IOException {
+        if (predicted == null) {
+            if (!rejected && --helloCountdown <= 0) {
+                helloCountdown = HELLO_INTERVAL;
+                out.clear();
+                out.put(NetServer.HELLO).put((byte) NetServer.PROTOCOL_VERSION);
+                send();
+            }
+            return;
+        }
+
+        long seq = nextSeq++;
+        inputs[(int) (seq % INPUT_HISTORY)] = buttons;
+        predict(buttons);
+
+        int count = (int) Math.min(nextSeq, NetServer.MAX_INPUTS_PER_PACKET);
+        long first = nextSeq - count;
+        out.clear();
+        out.put(NetServer.INPUT).putInt(latestTick).putInt((int) first).put((byte) count);
+        for (long s = first; s < nextSeq; s++) {
+            out.put((byte) inputs[(int) (s % INPUT_HISTORY)]);
+        }
+        send();
+    }
+
+    private void predict(int buttons) {
+        if (latest[Snapshot.GAME_OVER] != 0) return; // The server is not moving anyone
+        World.applyButtons(predicted, buttons);
+        level.focus(predicted.getX());
+        predicted.update(level, ++predictedTick);
+    }
+
+    /**
+     * Handles every packet waiting on the socket.
+     */
+    public void poll() throws IOException {
+        while (true) {
+            in.clear();
+            if (channel.receive(in) == null) return;
+            in.flip();
+            bytesReceived += in.remaining();
+            try {
+                handle();
+            } catch (RuntimeException e) {
+                System.err.println("Bad packet from server: " + e);
+            }
+        }
+    }
+
+    private void handle() {
+        byte type = in.get();
+        if (type == NetServer.WELCOME) {
+            if (playerIndex < 0) {
+                playerIndex = in.getShort() & 0xFFFF;
+            }
+        } else if (type == NetServer.REJECT) {
+            rejected = true;
+        } else if (type == NetServer.SNAPSHOT && playerIndex >= 0) {
+            int tick = in.getInt();
+            int baselineTick = in.getInt();
+            long lastInput = in.getInt();
+            if (tick <= latestTick) return; // Late or duplicate
+
+            int[] baseline = null;
+            if (baselineTick >= 0) {
+                int slot = baselineTick % SNAPSHOTS;
+                if (snapshotTicks[slot] != baselineTick) return; // Baseline already gone
+                baseline = snapshots[slot];
+            }
+            // Decoded into the array of the snapshot this one replaces as a baseline.
+            int slot = tick % SNAPSHOTS;
+            int[] reuse = snapshots[slot] != baseline && snapshots[slot] != latest ? snapshots[slot] : null;
+            snapshotTicks[slot] = -1;
+            int[] snapshot = Snapshot.readDelta(in, baseline, reuse);
+            snapshots[slot] = snapshot;
+            snapshotTicks[slot] = tick;
+            latest = snapshot;
+            latestTick = tick;
+            snapshotsReceived++;
+            reconcile(snapshot, lastInput);
+        }
+    }
+
+    /**
+     * Resets the predicted player to the server's state and replays the inputs sent since the
+     * one that state includes.
+     */
+    private void reconcile(int[] snapshot, long lastInput) {
+        int offset = Snapshot.playerOffset(playerIndex);
+        if (playerIndex >= snapshot[Snapshot.PLAYER_SLOTS] || snapshot[offset] == 0) return;
+
+        boolean first = predicted == null;
+        int oldX = first ? 0 : predicted.getX(), oldY = first ? 0 : predicted.getY();
+        if (first) {
+            predicted = new Player(0, 0);
+            nextSeq = 0;
+            lastInput = -1;
+        }
+        predicted.loadState(snapshot, offset + 1);
+        predictedTick = predicted.getTick(); // World ticks, which the player's clip start is in
+
+        long pending = Math.max(lastInput + 1, nextSeq - INPUT_HISTORY);
+        for (long s = pending; s < nextSeq; s++) {
+            predict(inputs[(int) (s % INPUT_HISTORY)]);
+        }
+        if (!first && (predicted.getX() != oldX || predicted.getY() != oldY)) {
+            corrections++;
+        }
+    }
+
+    private void send() throws IOException {
+        out.flip();
+        bytesSent += channel.write(out);
+    }
+
+    /**
+     * Tells the server this client is leaving and closes the socket.
+     */
+    public void close() {
+        try {
+            if (playerIndex >= 0) {
+                out.clear();
+                out.put(NetServer.BYE);
+                send();
+            }
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public boolean isConnected() { return predicted != null; }
+    public boolean isRejected() { return rejected; }
+    public int getPlayerIndex() { return playerIndex; }
+
+    /** @return the locally predicted player, or null before the first snapshot */
+    public Player getPredictedPlayer() { return predicted; }
+
+    /** @return the newest snapshot from the server in {@link Snapshot}'s layout, or null */
+    int[] getLatestSnapshot() { return latest; }
+
+    public int getLatestTick() { return latestTick; }
+    public long getBytesSent() { return bytesSent; }
+    public long getBytesReceived() { return bytesReceived; }
+    public long getSnapshotsReceived() { return snapshotsReceived; }
+
+    /** @return how many snapshots moved the predicted player, i.e. mispredictions */
+    public long getCorrections() { return corrections; }
+}
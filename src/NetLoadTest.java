@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Runs a {@link NetServer} on loopback with a crowd of bot {@link NetClient}s playing the
+ * patrol script, then reports the server's tick time and the bandwidth per client.
+ *
+ * <pre>
+ * java -Djava.awt.headless=true NetLoadTest [players] [seconds] [enemies]
+ * </pre>
+ */
+public class NetLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int enemies = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        NetServer server = new NetServer(new World(enemies, 42), new InetSocketAddress("127.0.0.1", 0), players);
+        server.start();
+
+        NetClient[] bots = new NetClient[players];
+        for (int b = 0; b < players; b++) {
+            bots[b] = new NetClient(server.getAddress());
+        }
+        GameLoop botLoop = new GameLoop(new GameLoop.Game() {
+            long tick;
+
+            @Override
+            public void tick() {
+                tick++;
+                try {
+                    for (int b = 0; b < bots.length; b++) {
+                        bots[b].poll();
+                        // Offset each bot's script so they spread out along the level.
+                        bots[b].tick(HeadlessRunner.PATROL.buttonsAt(tick + b * 13));
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            @Override
+            public void render(double alpha) {}
+        }, GameLoop.TICK_RATE);
+        botLoop.start();
+
+        Thread.sleep(seconds * 1000L);
+        botLoop.stop();
+        server.stop();
+
+        int connected = 0;
+        long down = 0, up = 0, corrections = 0;
+        for (NetClient bot : bots) {
+            if (bot.isConnected()) connected++;
+            down += bot.getBytesReceived();
+            up += bot.getBytesSent();
+            corrections += bot.getCorrections();
+            bot.close();
+        }
+
+        Histogram tickNanos = server.getTickNanos();
+        System.out.printf("%d/%d bots connected, %d ticks, %d enemies%n",
+                connected, players, server.getTick(), enemies);
+        System.out.printf("server tick: p50 %.3f ms, p99 %.3f ms, max %.3f ms, mean %.3f ms%n",
+                tickNanos.percentile(0.5) / 1e6, tickNanos.percentile(0.99) / 1e6,
+                tickNanos.getMax() / 1e6, tickNanos.getMean() / 1e6);
+        System.out.printf("per client: %.2f KB/s down, %.2f KB/s up, %.1f corrections%n",
+                down / (double) seconds / 1024 / players, up / (double) seconds / 1024 / players,
+                corrections / (double) players);
+        System.out.printf("snapshots: %d sent, %d full, %d dropped as too large%n",
+                server.getSnapshotsSent(), server.getFullSnapshotsSent(), server.getSnapshotsDropped());
+    }
+}
@@ -0,0 +1,346 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Headless authoritative server for co-op play. It owns the only real {@link World}: clients
+ * send their buttons, the server applies one input per client per tick, and every tick it
+ * sends each client a snapshot delta-compressed against the newest snapshot that client has
+ * acknowledged. Everything runs on one {@link GameLoop} thread over a non-blocking
+ * {@link DatagramChannel}; incoming packets are drained between ticks.
+ *
+ * <pre>
+ * client to server:
+ *   HELLO     version:u8
+ *   INPUT     ackTick:i32 firstSeq:i32 count:u8 buttons:u8 x count    newest input last
+ *   BYE
+ * server to client:
+ *   WELCOME   playerIndex:u16
+ *   REJECT                                                           server full or bad version
+ *   SNAPSHOT  tick:i32 baselineTick:i32 lastInputSeq:i32 delta        baseline -1 means none
+ * </pre>
+ *
+ * <pre>
+ * java -Djava.awt.headless=true NetServer [port] [enemies] [seed] [maxPlayers]
+ * </pre>
+ */
+public class NetServer implements GameLoop.Game {
+
+    public static final int DEFAULT_PORT = 27015;
+    // 2: player state carries 64-bit clip start and tick
+    // 3: snapshots carry the world tick
+    public static final int PROTOCOL_VERSION = 3;
+
+    public static final byte HELLO = 1;
+    public static final byte INPUT = 2;
+    public static final byte BYE = 3;
+    public static final byte WELCOME = 10;
+    public static final byte REJECT = 11;
+    public static final byte SNAPSHOT = 12;
+
+    /** Largest datagram either side sends; a snapshot that does not fit is not sent. */
+    public static final int MAX_PACKET = 65507;
+    /** Most inputs a client repeats in one packet, so a lost packet costs nothing. */
+    public static final int MAX_INPUTS_PER_PACKET = 16;
+
+    private static final int HISTORY = 32; // Snapshots kept as delta baselines
+    private static final int INPUT_BUFFER = 64;
+    private static final int MAX_INPUT_LAG = 8; // Queued inputs beyond this are skipped
+    private static final int TIMEOUT_TICKS = 5 * GameLoop.TICK_RATE;
+    private static final int RESTART_TICKS = 2 * GameLoop.TICK_RATE;
+    private static final int REPORT_TICKS = 10 * GameLoop.TICK_RATE;
+
+    private static final class Client {
+        final SocketAddress address;
+        final int player;
+        final int[] inputs = new int[INPUT_BUFFER]; // Buttons by sequence number
+        long newestSeq = -1, appliedSeq = -1;
+        int buttons;
+        int ackTick = -1;
+        int lastHeard;
+
+        Client(SocketAddress address, int player, int tick) {
+            this.address = address;
+            this.player = player;
+            this.lastHeard = tick;
+        }
+    }
+
+    private final World world;
+    private final DatagramChannel channel;
+    private final GameLoop loop;
+    private final int maxPlayers;
+
+    private final Map<SocketAddress, Client> clients = new HashMap<>();
+    private final List<Client> clientList = new ArrayList<>(); // Same clients, in join order
+
+    private final int[][] history = new int[HISTORY][];
+    private final int[] historyTick = new int[HISTORY];
+    private int tick;
+    private int gameOverTicks;
+
+    private final ByteBuffer in = ByteBuffer.allocateDirect(MAX_PACKET);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(MAX_PACKET);
+
+    // Statistics
+    private final Histogram tickNanos = new Histogram();
+    private final Histogram windowNanos = new Histogram(); // Since the last report
+    private long bytesSent, bytesReceived, windowBytesSent;
+    private long snapshotsSent, fullSnapshotsSent, snapshotsDropped;
+
+    /**
+     * Takes over the world, removing its local player 0: every player comes from a client.
+     */
+    public NetServer(World world, InetSocketAddress bind, int maxPlayers) throws IOException {
+        this.world = world;
+        this.maxPlayers = maxPlayers;
+        for (int p = 0; p < world.getPlayerCount(); p++) {
+            world.removePlayer(p);
+        }
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.bind(bind);
+        Arrays.fill(historyTick, -1);
+        loop = new GameLoop(this, GameLoop.TICK_RATE);
+    }
+
+    public void start() {
+        loop.start();
+    }
+
+    /**
+     * Stops ticking and closes the socket.
+     */
+    public void stop() {
+        loop.stop();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    /**
+     * Drains every datagram waiting on the socket. Called between ticks as often as the loop
+     * spins, so inputs arrive with little delay.
+     */
+    @Override
+    public void render(double alpha) {
+        try {
+            SocketAddress from;
+            while ((from = receive()) != null) {
+                handle(from);
+            }
+        } catch (IOException e) {
+            System.err.println("Server receive failed");
+            e.printStackTrace();
+        }
+    }
+
+    private SocketAddress receive() throws IOException {
+        in.clear();
+        SocketAddress from = channel.receive(in);
+        if (from != null) {
+            in.flip();
+            bytesReceived += in.remaining();
+        }
+        return from;
+    }
+
+    private void handle(SocketAddress from) {
+        if (!in.hasRemaining()) return;
+        byte type = in.get();
+        Client client = clients.get(from);
+        try {
+            if (type == HELLO) {
+                hello(from, client);
+            } else if (client != null && type == INPUT) {
+                input(client);
+            } else if (client != null && type == BYE) {
+                leave(client);
+            }
+        } catch (RuntimeException e) {
+            // A malformed packet from one client must not stop the server.
+            System.err.println("Bad packet from " + from + ": " + e);
+        }
+    }
+
+    private void hello(SocketAddress from, Client client) {
+        int version = in.hasRemaining() ? in.get() & 0xFF : -1;
+        if (client == null) {
+            if (version != PROTOCOL_VERSION || clients.size() >= maxPlayers) {
+                out.clear();
+                out.put(REJECT);
+                send(from);
+                return;
+            }
+            client = new Client(from, world.addPlayer(), tick);
+            clients.put(from, client);
+            clientList.add(client);
+            System.out.println("Player " + client.player + " joined from " + from);
+        }
+        // Repeated until the client hears back, so answer every HELLO.
+        client.lastHeard = tick;
+        out.clear();
+        out.put(WELCOME).putShort((short) client.player);
+        send(from);
+    }
+
+    private void input(Client client) {
+        client.lastHeard = tick;
+        int ack = in.getInt();
+        long firstSeq = in.getInt() & 0xFFFFFFFFL;
+        int count = in.get() & 0xFF;
+        if (count > MAX_INPUTS_PER_PACKET) return;
+        if (ack > client.ackTick && ack <= tick) {
+            client.ackTick = ack;
+        }
+        for (int k = 0; k < count; k++) {
+            long seq = firstSeq + k;
+            int buttons = in.get() & 0xFF;
+            if (seq > client.newestSeq && seq - client.appliedSeq < INPUT_BUFFER) {
+                client.inputs[(int) (seq % INPUT_BUFFER)] = buttons;
+                client.newestSeq = seq;
+            }
+        }
+    }
+
+    private void leave(Client client) {
+        clients.remove(client.address);
+        clientList.remove(client);
+        world.removePlayer(client.player);
+        System.out.println("Player " + client.player + " left");
+    }
+
+    @Override
+    public void tick() {
+        long start = System.nanoTime();
+
+        for (Client client : clientList) {
+            world.applyInput(client.player, nextInput(client));
+        }
+        world.tick();
+        if (world.isGameOver() && ++gameOverTicks >= RESTART_TICKS) {
+            gameOverTicks = 0;
+            world.restart();
+        }
+
+        tick++;
+        int slot = tick % HISTORY;
+        history[slot] = Snapshot.capture(world, tick, history[slot]);
+        historyTick[slot] = tick;
+
+        for (int c = clientList.size() - 1; c >= 0; c--) {
+            Client client = clientList.get(c);
+            if (tick - client.lastHeard > TIMEOUT_TICKS) {
+                leave(client);
+            } else {
+                sendSnapshot(client, history[slot]);
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        tickNanos.record(elapsed);
+        windowNanos.record(elapsed);
+        if (tick % REPORT_TICKS == 0) {
+            report();
+        }
+    }
+
+    /**
+     * Takes the client's next queued input, or repeats its last buttons if none has arrived.
+     * A client that has run ahead by more than {@link #MAX_INPUT_LAG} inputs skips the oldest.
+     */
+    private int nextInput(Client client) {
+        if (client.newestSeq - client.appliedSeq > MAX_INPUT_LAG) {
+            client.appliedSeq = client.newestSeq - MAX_INPUT_LAG;
+        }
+        if (client.appliedSeq < client.newestSeq) {
+            client.appliedSeq++;
+            client.buttons = client.inputs[(int) (client.appliedSeq % INPUT_BUFFER)];
+        }
+        return client.buttons;
+    }
+
+    private void sendSnapshot(Client client, int[] snapshot) {
+        int[] baseline = null;
+        int baselineTick = -1;
+        if (client.ackTick > tick - HISTORY && client.ackTick >= 0) {
+            int slot = client.ackTick % HISTORY;
+            if (historyTick[slot] == client.ackTick) {
+                baseline = history[slot];
+                baselineTick = client.ackTick;
+            }
+        }
+
+        out.clear();
+        out.put(SNAPSHOT).putInt(tick).putInt(baselineTick).putInt((int) client.appliedSeq);
+        try {
+            Snapshot.writeDelta(snapshot, baseline, out);
+        } catch (BufferOverflowException e) {
+            snapshotsDropped++;
+            return;
+        }
+        snapshotsSent++;
+        if (baseline == null) fullSnapshotsSent++;
+        send(client.address);
+    }
+
+    private void send(SocketAddress to) {
+        out.flip();
+        try {
+            int sent = channel.send(out, to);
+            bytesSent += sent;
+            windowBytesSent += sent;
+        } catch (IOException e) {
+            System.err.println("Send to " + to + " failed: " + e);
+        }
+    }
+
+    private void report() {
+        double seconds = REPORT_TICKS / (double) GameLoop.TICK_RATE;
+        System.out.printf("tick %d: %d players, tick p50 %.3f ms p99 %.3f ms, %.1f KB/s out per player%n",
+                tick, clientList.size(), windowNanos.percentile(0.5) / 1e6, windowNanos.percentile(0.99) / 1e6,
+                clientList.isEmpty() ? 0 : windowBytesSent / seconds / 1024 / clientList.size());
+        windowNanos.reset();
+        windowBytesSent = 0;
+    }
+
+    public int getClientCount() { return clientList.size(); }
+    public int getTick() { return tick; }
+    public Histogram getTickNanos() { return tickNanos; }
+    public long getBytesSent() { return bytesSent; }
+    public long getBytesReceived() { return bytesReceived; }
+    public long getSnapshotsSent() { return snapshotsSent; }
+    public long getFullSnapshotsSent() { return fullSnapshotsSent; }
+    public long getSnapshotsDropped() { return snapshotsDropped; }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int enemies = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        int maxPlayers = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+
+        NetServer server = new NetServer(new World(enemies, seed), new InetSocketAddress(port), maxPlayers);
+        server.start();
+        System.out.println("Server listening on " + server.getAddress());
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+import java.awt.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * All short-lived effects in the world: score pop-ups, explosion sparks and landing dust.
+ * Particles are kept as parallel primitive arrays of fixed capacity. A dead particle is
+ * removed by moving the last live one into its slot, so the live particles are always the
+ * first {@link #getCount()} entries and an update is one pass over them without
+ * allocating. Spawns beyond the capacity are dropped.
+ * <p>
+ * Particles are cosmetic and draw from their own {@link GameRandom}, so adding or tuning
+ * effects never changes the gameplay random sequence.
+ */
+public class Particles {
+
+    public static final int KIND_DOT = 0;
+    public static final int KIND_POPUP = 1;
+
+    // Palette indices
+    public static final int WHITE = 0;
+    public static final int YELLOW = 1;
+    public static final int ORANGE = 2;
+    public static final int DUST = 3;
+    public static final int RED = 4;
+    private static final Color[] PALETTE = {
+            Color.WHITE, Color.YELLOW, new Color(255, 140, 0), new Color(150, 120, 90), Color.RED
+    };
+
+    private static final float GRAVITY = 0.35f;
+    private static final int POPUP_SPEED = 2; // Pixels per tick, upwards
+
+    private final int capacity;
+    private int count;
+
+    final float[] x, y, vx, vy, ay;
+    final int[] life, maxLife;
+    final int[] kind, color, size;
+    final int[] value; // Number shown by a pop-up
+
+    private final GameRandom random;
+
+    // Pop-up text comes from the shared TextCache. The few sprites on screen are remembered
+    // here, direct-mapped by colour and value, so drawing does not build a string per frame.
+    private static final int POPUP_SLOTS = 16;
+    private final int[] popupKeys = new int[POPUP_SLOTS];
+    private final TextSprite[] popupSprites = new TextSprite[POPUP_SLOTS];
+    private final TextStyle[] popupStyles = new TextStyle[PALETTE.length];
+    private Font popupFont;
+    private final Rectangle clip = new Rectangle();
+
+    public Particles(int capacity, long seed) {
+        this.capacity = capacity;
+        x = new float[capacity];
+        y = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        ay = new float[capacity];
+        life = new int[capacity];
+        maxLife = new int[capacity];
+        kind = new int[capacity];
+        color = new int[capacity];
+        size = new int[capacity];
+        value = new int[capacity];
+        random = new GameRandom(seed);
+    }
+
+    /**
+     * Adds a "+value Kill" pop-up centred on x with its baseline at y, rising and fading out
+     * over {@code ticks} ticks.
+     */
+    public boolean spawnPopup(int value, float x, float y, int ticks, int color) {
+        int i = add(KIND_POPUP, x, y, 0, -POPUP_SPEED, 0, ticks, color, 0);
+        if (i < 0) return false;
+        this.value[i] = value;
+        return true;
+    }
+
+    /**
+     * Adds {@code n} sparks flying out from a point in all directions and falling back down.
+     */
+    public void spawnBurst(float x, float y, int n, int color, float speed, int ticks) {
+        for (int k = 0; k < n; k++) {
+            double angle = random.nextInt(360) * (Math.PI / 180);
+            float s = speed * (0.4f + random.nextInt(60) / 100f);
+            int t = ticks / 2 + random.nextInt(ticks / 2 + 1);
+            if (add(KIND_DOT, x, y, (float) Math.cos(angle) * s, (float) Math.sin(angle) * s, GRAVITY,
+                    t, color, 4 + random.nextInt(4)) < 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds {@code n} puffs of dust kicked up sideways along the ground at a point.
+     */
+    public void spawnDust(float x, float y, int n) {
+        for (int k = 0; k < n; k++) {
+            float side = (k % 2 == 0) ? 1 : -1;
+            float speed = 0.5f + random.nextInt(150) / 100f;
+            if (add(KIND_DOT, x, y - 2, side * speed, -0.6f - random.nextInt(60) / 100f, 0.05f,
+                    12 + random.nextInt(10), DUST, 3 + random.nextInt(3)) < 0) {
+                return;
+            }
+        }
+    }
+
+    private int add(int kind, float x, float y, float vx, float vy, float ay, int ticks, int color, int size) {
+        if (count == capacity || ticks <= 0) return -1;
+        int i = count++;
+        this.kind[i] = kind;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+        this.ay[i] = ay;
+        this.life[i] = ticks;
+        this.maxLife[i] = ticks;
+        this.color[i] = color;
+        this.size[i] = size;
+        return i;
+    }
+
+    /**
+     * Advances every particle by one tick and removes the expired ones.
+     */
+    public void update() {
+        int i = 0;
+        while (i < count) {
+            if (--life[i] <= 0) {
+                remove(i);
+                continue; // The particle moved into slot i still needs updating
+            }
+            x[i] += vx[i];
+            y[i] += vy[i];
+            vy[i] += ay[i];
+            i++;
+        }
+    }
+
+    private void remove(int i) {
+        int last = --count;
+        if (i == last) return;
+        x[i] = x[last];
+        y[i] = y[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        ay[i] = ay[last];
+        life[i] = life[last];
+        maxLife[i] = maxLife[last];
+        kind[i] = kind[last];
+        color[i] = color[last];
+        size[i] = size[last];
+        value[i] = value[last];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Copies the live particles of another system of at least this capacity, so the copy can
+     * be drawn while the original keeps updating.
+     */
+    public void copyFrom(Particles other) {
+        int n = other.count;
+        System.arraycopy(other.x, 0, x, 0, n);
+        System.arraycopy(other.y, 0, y, 0, n);
+        System.arraycopy(other.vx, 0, vx, 0, n);
+        System.arraycopy(other.vy, 0, vy, 0, n);
+        System.arraycopy(other.ay, 0, ay, 0, n);
+        System.arraycopy(other.life, 0, life, 0, n);
+        System.arraycopy(other.maxLife, 0, maxLife, 0, n);
+        System.arraycopy(other.kind, 0, kind, 0, n);
+        System.arraycopy(other.color, 0, color, 0, n);
+        System.arraycopy(other.size, 0, size, 0, n);
+        System.arraycopy(other.value, 0, value, 0, n);
+        count = n;
+    }
+
+    /** @return the number of bytes {@link #saveState} writes */
+    int stateSize() {
+        return 2 * Integer.BYTES + Long.BYTES + count * (5 * Float.BYTES + 6 * Integer.BYTES);
+    }
+
+    /**
+     * Writes the live particles and the random state for {@link SaveState}.
+     */
+    void saveState(ByteBuffer out) {
+        out.putInt(count).putInt(capacity).putLong(random.getState());
+        SaveState.putFloats(out, x, count);
+        SaveState.putFloats(out, y, count);
+        SaveState.putFloats(out, vx, count);
+        SaveState.putFloats(out, vy, count);
+        SaveState.putFloats(out, ay, count);
+        SaveState.putInts(out, life, count);
+        SaveState.putInts(out, maxLife, count);
+        SaveState.putInts(out, kind, count);
+        SaveState.putInts(out, color, count);
+        SaveState.putInts(out, size, count);
+        SaveState.putInts(out, value, count);
+    }
+
+    /**
+     * Reads state written by {@link #saveState} and checks it fits this system. Changes nothing.
+     */
+    void checkState(ByteBuffer in) {
+        int n = in.getInt();
+        if (in.getInt() != capacity || n < 0 || n > capacity) {
+            throw new IllegalArgumentException("Particle state does not fit a capacity of " + capacity);
+        }
+        in.getLong();
+        SaveState.skip(in, 5 * n, Float.BYTES);
+        SaveState.skip(in, 2 * n, Integer.BYTES);
+        SaveState.checkInts(in, n, KIND_DOT, KIND_POPUP, "particle kind");
+        SaveState.checkInts(in, n, 0, PALETTE.length - 1, "particle colour");
+        SaveState.skip(in, 2 * n, Integer.BYTES);
+    }
+
+    /**
+     * Restores state written by {@link #saveState} from a system of the same capacity.
+     */
+    void loadState(ByteBuffer in) {
+        int n = in.getInt();
+        if (in.getInt() != capacity || n < 0 || n > capacity) {
+            throw new IllegalArgumentException("Particle state does not fit a capacity of " + capacity);
+        }
+        random.setState(in.getLong());
+        SaveState.getFloats(in, x, n);
+        SaveState.getFloats(in, y, n);
+        SaveState.getFloats(in, vx, n);
+        SaveState.getFloats(in, vy, n);
+        SaveState.getFloats(in, ay, n);
+        SaveState.getInts(in, life, n);
+        SaveState.getInts(in, maxLife, n);
+        SaveState.getInts(in, kind, n);
+        SaveState.getInts(in, color, n);
+        SaveState.getInts(in, size, n);
+        SaveState.getInts(in, value, n);
+        count = n;
+    }
+
+    /**
+     * Draws all particles in one pass: sparks and dust as squares, changing colour only when it
+     * differs from the previous particle, and pop-ups as cached text sprites in {@code font}.
+     * Squares outside the clip are skipped without a call into Java2D.
+     */
+    public void draw(Graphics2D g, Font font) {
+        // Left as is when there is no clip.
+        clip.setBounds(Integer.MIN_VALUE / 2, Integer.MIN_VALUE / 2, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        g.getClipBounds(clip);
+        int clipX1 = clip.x, clipY1 = clip.y, clipX2 = clip.x + clip.width, clipY2 = clip.y + clip.height;
+
+        int currentColor = -1;
+        for (int i = 0; i < count; i++) {
+            if (kind[i] == KIND_POPUP) {
+                TextSprite sprite = popupSprite(i, font);
+                sprite.draw(g, (int) x[i] - sprite.getTextWidth() / 2, (int) y[i], (float) life[i] / maxLife[i]);
+                continue;
+            }
+            int s = size[i];
+            int px = (int) x[i] - s / 2, py = (int) y[i] - s / 2;
+            if (px >= clipX2 || py >= clipY2 || px + s <= clipX1 || py + s <= clipY1) continue;
+            if (color[i] != currentColor) {
+                currentColor = color[i];
+                g.setColor(PALETTE[currentColor]);
+            }
+            g.fillRect(px, py, s, s);
+        }
+    }
+
+    /**
+     * Reports the area the particles cover this frame: each pop-up on its own and all other
+     * particles as one box around them.
+     */
+    public void addBounds(DirtyRegions dirty, Font font) {
+        int x1 = Integer.MAX_VALUE, y1 = Integer.MAX_VALUE, x2 = Integer.MIN_VALUE, y2 = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (kind[i] == KIND_POPUP) {
+                TextSprite sprite = popupSprite(i, font);
+                sprite.addBounds(dirty, (int) x[i] - sprite.getTextWidth() / 2, (int) y[i]);
+                continue;
+            }
+            int half = size[i] / 2;
+            int px = (int) x[i] - half, py = (int) y[i] - half;
+            if (px < x1) x1 = px;
+            if (py < y1) y1 = py;
+            if (px + size[i] > x2) x2 = px + size[i];
+            if (py + size[i] > y2) y2 = py + size[i];
+        }
+        if (x1 < x2) {
+            dirty.add(x1, y1, x2 - x1, y2 - y1);
+        }
+    }
+
+    private TextSprite popupSprite(int i, Font font) {
+        if (!font.equals(popupFont)) {
+            popupFont = font;
+            Arrays.fill(popupSprites, null);
+            Arrays.fill(popupStyles, null);
+        }
+        int c = color[i];
+        int v = Math.max(0, value[i]);
+        int key = v * PALETTE.length + c;
+        int slot = key & (POPUP_SLOTS - 1);
+        if (popupSprites[slot] == null || popupKeys[slot] != key) {
+            if (popupStyles[c] == null) {
+                popupStyles[c] = TextStyle.outlined(font, PALETTE[c], Color.BLACK);
+            }
+            popupKeys[slot] = key;
+            popupSprites[slot] = TextCache.shared().get("+" + v + " Kill", popupStyles[c]);
+        }
+        return popupSprites[slot];
+    }
+
+    public int getCount() { return count; }
+    public int getCapacity() { return capacity; }
+}
@@ -1,128 +1,161 @@
-import javax.swing.*;
 import java.awt.*;
-import java.net.URL;
 
 /**
  * Represents the player character, handling its state, movement, and animation.
  */
 public class Player {
 
-    private enum AnimationState {
-        IDLE, RUN, JUMP, FALL, HIT
-    }
+    private static final AnimationClip IDLE = Animations.find("player.idle");
+    private static final AnimationClip RUN = Animations.find("player.run");
+    private static final AnimationClip JUMP = Animations.find("player.jump");
+    private static final AnimationClip FALL = Animations.find("player.fall");
+    private static final AnimationClip HIT = Animations.find("player.hit");
+
+    /** How long the hit state lasts. */
+    public static final int HIT_TICKS = 30;
 
     private int x, y;
+    private int prevX, prevY;
     private final int width = 60, height = 60;
     private int dx = 0, dy = 0;
     private boolean onGround = false;
     private boolean facingRight = true;
 
-    private AnimationState currentState = AnimationState.IDLE;
-    private int hitTimer = 0;
-
-    private Image idleSheet, runSheet, jumpSheet, fallSheet, hitSheet;
+    private boolean hurt; // Between being hit and World calling recover()
 
-    private final int[] frameCounts = {11, 12, 1, 1, 7}; // Corresponds to AnimationState enum order
-    private final int[] animSpeeds = {2, 2, 1, 1, 1};
-
-    private int frameIndex = 0;
-    private int animCounter = 0;
+    // Animation: the clip playing and the tick it started on.
+    private int clip = IDLE.getId();
+    private long clipStart;
+    private long tick; // Of the latest update
 
     public Player(int x, int y) {
         this.x = x;
         this.y = y;
-        loadSpriteSheets();
-    }
-
-    private void loadSpriteSheets() {
-        try {
-            URL idleUrl = getClass().getResource("/assets/idle.png");
-            if (idleUrl != null) idleSheet = new ImageIcon(idleUrl).getImage();
-            
-            URL runUrl = getClass().getResource("/assets/run.png");
-            if (runUrl != null) runSheet = new ImageIcon(runUrl).getImage();
-            
-            URL jumpUrl = getClass().getResource("/assets/Jump (32x32).png");
-            if (jumpUrl != null) jumpSheet = new ImageIcon(jumpUrl).getImage();
-            
-            URL fallUrl = getClass().getResource("/assets/fall.png");
-            if (fallUrl != null) fallSheet = new ImageIcon(fallUrl).getImage();
-            
-            URL hitUrl = getClass().getResource("/assets/hit.png");
-            if (hitUrl != null) hitSheet = new ImageIcon(hitUrl).getImage();
-        } catch (Exception e) {
-            System.err.println("Failed to load player sprite sheets.");
-            e.printStackTrace();
-        }
+        this.prevX = x;
+        this.prevY = y;
     }
 
-    public void update(Level level) {
-        x += dx;
+    /**
+     * Advances the player to world tick {@code tick}.
+     */
+    public void update(Level level, long tick) {
+        this.tick = tick;
+        prevX = x;
+        prevY = y;
+
+        moveHorizontally(level);
         dy += 1; // Gravity
-        y += dy;
+        moveVertically(level);
+
+        updateClip();
+    }
+
+    /**
+     * Moves by dx, stopping flush against solid tiles and the level edges.
+     */
+    private void moveHorizontally(Level level) {
+        x = Math.max(0, Math.min(level.getWidth() - width, x + dx));
+        if (dx > 0 && hitsWall(level, x + width - 1)) {
+            x = Math.floorDiv(x + width - 1, level.getTileSize()) * level.getTileSize() - width;
+        } else if (dx < 0 && hitsWall(level, x)) {
+            x = (Math.floorDiv(x, level.getTileSize()) + 1) * level.getTileSize();
+        }
+    }
+
+    private boolean hitsWall(Level level, int px) {
+        return level.isSolid(px, y) || level.isSolid(px, y + height - 1);
+    }
 
-        if (y >= level.getGroundY() - height) {
-            y = level.getGroundY() - height;
+    /**
+     * Moves by dy, landing on top of solid tiles and bumping into them from below.
+     */
+    private void moveVertically(Level level) {
+        y += dy;
+        int tileSize = level.getTileSize();
+        if (dy >= 0 && (level.isSolid(x, y + height) || level.isSolid(x + width - 1, y + height))) {
+            y = Math.floorDiv(y + height, tileSize) * tileSize - height;
             dy = 0;
             onGround = true;
         } else {
             onGround = false;
+            if (dy < 0 && (level.isSolid(x, y) || level.isSolid(x + width - 1, y))) {
+                y = (Math.floorDiv(y, tileSize) + 1) * tileSize;
+                dy = 0;
+            }
         }
-
-        if (hitTimer > 0) {
-            hitTimer--;
-        }
-
-        updateState();
-        updateAnimation();
     }
 
-    private void updateState() {
-        if (hitTimer > 0) {
-            currentState = AnimationState.HIT;
+    /**
+     * Switches to the clip for the current state, restarting it only when it changes.
+     */
+    private void updateClip() {
+        AnimationClip next;
+        if (hurt) {
+            next = HIT;
         } else if (!onGround) {
-            currentState = (dy < 0) ? AnimationState.JUMP : AnimationState.FALL;
+            next = (dy < 0) ? JUMP : FALL;
         } else {
-            currentState = (dx != 0) ? AnimationState.RUN : AnimationState.IDLE;
+            next = (dx != 0) ? RUN : IDLE;
+        }
+        if (next.getId() != clip) {
+            clip = next.getId();
+            clipStart = tick;
         }
     }
 
-    private void updateAnimation() {
-        animCounter++;
-        int stateIndex = currentState.ordinal();
-        if (animCounter >= animSpeeds[stateIndex]) {
-            animCounter = 0;
-            frameIndex = (frameIndex + 1) % frameCounts[stateIndex];
-        }
+    /**
+     * Makes this player an exact copy of another, including its previous position and
+     * animation, e.g. so a copy can be drawn while the original keeps updating.
+     */
+    public void copyFrom(Player other) {
+        x = other.x;
+        y = other.y;
+        prevX = other.prevX;
+        prevY = other.prevY;
+        dx = other.dx;
+        dy = other.dy;
+        onGround = other.onGround;
+        facingRight = other.facingRight;
+        hurt = other.hurt;
+        clip = other.clip;
+        clipStart = other.clipStart;
+        tick = other.tick;
+    }
+
+    /**
+     * Draws the player interpolated between its previous and current tick positions.
+     */
+    public void draw(Graphics g, double alpha) {
+        Animations.get(clip).draw(g, tick - clipStart, facingRight, drawX(alpha), drawY(alpha));
     }
 
-    public void draw(Graphics g) {
-        Image currentSheet = getCurrentImageSheet();
-        if (currentSheet == null) return;
+    /**
+     * Adds the player to a batch, interpolated like {@link #draw}.
+     */
+    public void addTo(SpriteBatch batch, double alpha) {
+        batch.add(Animations.get(clip), tick - clipStart, facingRight, drawX(alpha), drawY(alpha));
+    }
 
-        int frameCount = frameCounts[currentState.ordinal()];
-        int frameW = currentSheet.getWidth(null) / frameCount;
-        int sx1 = frameIndex * frameW;
-        int sy1 = 0;
-        int sx2 = sx1 + frameW;
-        int sy2 = currentSheet.getHeight(null);
+    /**
+     * Reports where the player is drawn this frame.
+     */
+    public void addBounds(DirtyRegions dirty, double alpha) {
+        dirty.add(drawX(alpha), drawY(alpha), width, height);
+    }
 
-        if (facingRight) {
-            g.drawImage(currentSheet, x, y, x + width, y + height, sx1, sy1, sx2, sy2, null);
-        } else {
-            g.drawImage(currentSheet, x + width, y, x, y + height, sx1, sy1, sx2, sy2, null);
-        }
+    /**
+     * @return the x the player is drawn at for the given interpolation alpha
+     */
+    public int getDrawX(double alpha) {
+        return drawX(alpha);
     }
 
-    private Image getCurrentImageSheet() {
-        switch (currentState) {
-            case IDLE: return idleSheet;
-            case RUN: return runSheet;
-            case JUMP: return jumpSheet;
-            case FALL: return fallSheet;
-            case HIT: return hitSheet;
-            default: return null;
-        }
+    private int drawX(double alpha) {
+        return (int) Math.round(prevX + (x - prevX) * alpha);
+    }
+
+    private int drawY(double alpha) {
+        return (int) Math.round(prevY + (y - prevY) * alpha);
     }
 
     public void moveRight() {
@@ -150,13 +183,95 @@ public class Player {
         dy = -10;
     }
 
-    public void takeHit() {
-        if (hitTimer <= 0) { // Prevent taking hits while already in hit state
-            hitTimer = 30; // Hit animation duration
-        }
+    /**
+     * Starts the hit state, unless the player is already in it. The caller ends it with
+     * {@link #recover} after {@link #HIT_TICKS} ticks.
+     *
+     * @return true if the hit state started
+     */
+    public boolean takeHit() {
+        if (hurt) return false;
+        hurt = true;
+        return true;
+    }
+
+    public void recover() {
+        hurt = false;
     }
     
+    public long getTick() { return tick; }
     public boolean isOnGround() { return onGround; }
+    public boolean isHurt() { return hurt; }
     public Rectangle getBounds() { return new Rectangle(x, y, width, height); }
+    public int getX() { return x; }
+    public int getY() { return y; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
     public int getDY() { return dy; }
+
+    /** Number of ints written by {@link #saveState}. */
+    static final int STATE_SIZE = 10;
+
+    /**
+     * Writes the player's simulation state to {@code out} starting at {@code offset}.
+     */
+    void saveState(int[] out, int offset) {
+        out[offset] = x;
+        out[offset + 1] = y;
+        out[offset + 2] = dx;
+        out[offset + 3] = dy;
+        out[offset + 4] = (onGround ? 1 : 0) | (facingRight ? 2 : 0) | (hurt ? 4 : 0);
+        out[offset + 5] = clip;
+        out[offset + 6] = (int) clipStart;
+        out[offset + 7] = (int) (clipStart >>> 32);
+        out[offset + 8] = (int) tick;
+        out[offset + 9] = (int) (tick >>> 32);
+    }
+
+    /**
+     * Restores state written by {@link #saveState}, without interpolating from the old position.
+     */
+    void loadState(int[] in, int offset) {
+        x = prevX = in[offset];
+        y = prevY = in[offset + 1];
+        dx = in[offset + 2];
+        dy = in[offset + 3];
+        onGround = (in[offset + 4] & 1) != 0;
+        facingRight = (in[offset + 4] & 2) != 0;
+        hurt = (in[offset + 4] & 4) != 0;
+        clip = in[offset + 5];
+        clipStart = joinLong(in[offset + 6], in[offset + 7]);
+        tick = joinLong(in[offset + 8], in[offset + 9]);
+    }
+
+    /**
+     * Checks state written by {@link #saveState} before it is restored.
+     *
+     * @throws IllegalArgumentException if its animation clip does not exist
+     */
+    static void checkState(int[] in, int offset) {
+        int clip = in[offset + 5];
+        if (clip < 0 || clip >= Animations.count()) {
+            throw new IllegalArgumentException("Bad player clip " + clip + " in save state");
+        }
+    }
+
+    private static long joinLong(int low, int high) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Folds the player's simulation state into {@code hash}.
+     */
+    long checksum(long hash) {
+        hash = World.hash(hash, x);
+        hash = World.hash(hash, y);
+        hash = World.hash(hash, dx);
+        hash = World.hash(hash, dy);
+        hash = World.hash(hash, onGround ? 1 : 0);
+        hash = World.hash(hash, facingRight ? 1 : 0);
+        hash = World.hash(hash, hurt ? 1 : 0);
+        hash = World.hash(hash, clip);
+        return World.hash(hash, clipStart);
+    }
 }
@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Times the phases of each tick and frame into {@link Histogram}s.
+ * Every phase has an all-time histogram, which is what {@link #writeCsv} and
+ * {@link #writeJson} export, and a one-second window used for the in-game overlay. Phases are
+ * timed with {@code start}/{@code end} pairs, from the simulation and render threads alike, so
+ * recording is synchronized; a disabled profiler skips the clock reads entirely.
+ */
+public class Profiler {
+
+    public static final int TICK = 0;
+    public static final int PLAYER = 1;
+    public static final int ENEMIES = 2;
+    public static final int PARTICLES = 3;
+    public static final int COLLISIONS = 4;
+    public static final int PAINT = 5;
+    public static final int PRESENT = 6;
+    public static final int FRAME = 7;
+
+    private static final String[] NAMES = {
+            "tick", "player", "enemies", "particles", "collisions", "paint", "present", "frame"
+    };
+    public static final int PHASE_COUNT = NAMES.length;
+
+    /** Does nothing; used by simulations nobody is watching. */
+    public static final Profiler DISABLED = new Profiler(false);
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private final boolean enabled;
+    private final Histogram[] total = new Histogram[PHASE_COUNT];
+    private final Histogram[] window = new Histogram[PHASE_COUNT];
+    private long windowStart = System.nanoTime();
+
+    // Percentiles of the last complete window, in nanoseconds.
+    private final long[] windowP50 = new long[PHASE_COUNT];
+    private final long[] windowP99 = new long[PHASE_COUNT];
+    private final long[] windowMax = new long[PHASE_COUNT];
+
+    public Profiler() {
+        this(true);
+    }
+
+    private Profiler(boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            total[i] = new Histogram();
+            window[i] = new Histogram();
+        }
+    }
+
+    /**
+     * @return a timestamp to pass to {@link #end}
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since {@code start} for a phase.
+     *
+     * @return the current time, so consecutive phases can share one clock read
+     */
+    public long end(int phase, long start) {
+        if (!enabled) return 0;
+        long now = System.nanoTime();
+        record(phase, now - start);
+        return now;
+    }
+
+    public synchronized void record(int phase, long nanos) {
+        if (!enabled) return;
+        total[phase].record(nanos);
+        window[phase].record(nanos);
+    }
+
+    /**
+     * Closes the current window once it is a second old.
+     *
+     * @return true if new window statistics are available
+     */
+    public synchronized boolean rollWindow() {
+        if (!enabled) return false;
+        long now = System.nanoTime();
+        if (now - windowStart < WINDOW_NANOS) return false;
+        windowStart = now;
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            windowP50[i] = window[i].percentile(0.50);
+            windowP99[i] = window[i].percentile(0.99);
+            windowMax[i] = window[i].getMax();
+            window[i].reset();
+        }
+        return true;
+    }
+
+    public static String getName(int phase) { return NAMES[phase]; }
+    public long getWindowP50(int phase) { return windowP50[phase]; }
+    public long getWindowP99(int phase) { return windowP99[phase]; }
+    public long getWindowMax(int phase) { return windowMax[phase]; }
+    public Histogram getTotal(int phase) { return total[phase]; }
+
+    /**
+     * Writes all-time statistics per phase, in microseconds.
+     */
+    public void writeCsv(Path path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("phase,count,mean_us,p50_us,p90_us,p99_us,p999_us,max_us");
+            for (int i = 0; i < PHASE_COUNT; i++) {
+                Histogram h = total[i];
+                out.println(String.format(Locale.ROOT, "%s,%d,%.2f,%.2f,%.2f,%.2f,%.2f,%.2f",
+                        NAMES[i], h.getCount(), h.getMean() / 1e3, h.percentile(0.5) / 1e3,
+                        h.percentile(0.9) / 1e3, h.percentile(0.99) / 1e3,
+                        h.percentile(0.999) / 1e3, h.getMax() / 1e3));
+            }
+        }
+    }
+
+    /**
+     * Writes all-time statistics per phase, in microseconds.
+     */
+    public void writeJson(Path path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("{");
+            for (int i = 0; i < PHASE_COUNT; i++) {
+                Histogram h = total[i];
+                out.print(String.format(Locale.ROOT,
+                        "  \"%s\": {\"count\": %d, \"mean_us\": %.2f, \"p50_us\": %.2f, \"p90_us\": %.2f, "
+                                + "\"p99_us\": %.2f, \"p999_us\": %.2f, \"max_us\": %.2f}",
+                        NAMES[i], h.getCount(), h.getMean() / 1e3, h.percentile(0.5) / 1e3,
+                        h.percentile(0.9) / 1e3, h.percentile(0.99) / 1e3,
+                        h.percentile(0.999) / 1e3, h.getMax() / 1e3));
+                out.println(i < PHASE_COUNT - 1 ? "," : "");
+            }
+            out.println("}");
+        }
+    }
+}
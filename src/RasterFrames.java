@@ -0,0 +1,92 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * The frames of a {@link SpriteFrames} as premultiplied ARGB pixel arrays, in both facings,
+ * for {@link SpriteBlitter}. Each row's visible pixels are listed as runs, so transparent
+ * pixels are skipped without being read, and a frame whose pixels are all either fully
+ * opaque or fully transparent is marked so its runs can be copied without blending.
+ */
+public final class RasterFrames {
+
+    final int width, height;
+    final int[][] right, left; // Pixels by frame, row after row
+    final int[][] rightRuns, leftRuns; // Visible runs by frame, laid out as described at runs()
+    final boolean[] opaque; // True if a frame has no partly transparent pixels
+
+    RasterFrames(SpriteFrames frames) {
+        width = frames.getWidth();
+        height = frames.getHeight();
+        int count = frames.getFrameCount();
+        right = new int[count][];
+        left = new int[count][];
+        rightRuns = new int[count][];
+        leftRuns = new int[count][];
+        opaque = new boolean[count];
+
+        for (int i = 0; i < count; i++) {
+            right[i] = pixels(frames.frame(i, true));
+            left[i] = pixels(frames.frame(i, false));
+            rightRuns[i] = runs(right[i]);
+            leftRuns[i] = runs(left[i]);
+            opaque[i] = isOpaque(right[i]);
+        }
+    }
+
+    private int[] pixels(Image frame) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(frame, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Finds the runs of visible pixels in each row. The first {@code height + 1} entries of the
+     * result are offsets into the same array: row r's runs are the (start, end) column pairs
+     * from {@code runs[r]} until {@code runs[r + 1]}.
+     */
+    private int[] runs(int[] pixels) {
+        int[] runs = new int[height + 1 + (width + 1) * height];
+        int n = height + 1;
+        for (int r = 0; r < height; r++) {
+            runs[r] = n;
+            int row = r * width;
+            for (int c = 0; c < width; c++) {
+                if (pixels[row + c] >>> 24 == 0) continue;
+                int start = c;
+                while (c < width && pixels[row + c] >>> 24 != 0) c++;
+                runs[n++] = start;
+                runs[n++] = c;
+            }
+        }
+        runs[height] = n;
+        return Arrays.copyOf(runs, n);
+    }
+
+    private static boolean isOpaque(int[] pixels) {
+        for (int p : pixels) {
+            int a = p >>> 24;
+            if (a != 0 && a != 255) return false;
+        }
+        return true;
+    }
+
+    public int getFrameCount() {
+        return opaque.length;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
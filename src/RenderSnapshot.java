@@ -0,0 +1,60 @@
+/**
+ * Everything {@link GameFrame} draws from one tick of a {@link World}: player 0, the enemies,
+ * the particles and the HUD values. Snapshots are pooled in a {@link TripleBuffer}, so the
+ * simulation copies into one while the renderer draws another, and taking one allocates
+ * nothing.
+ */
+public final class RenderSnapshot {
+
+    private final Player player = new Player(0, 0);
+    private final EnemyStore enemies;
+    private final Particles particles;
+
+    private long tick;
+    private long capturedAt;
+    private long inputSince;
+    private int score;
+    private int lives;
+    private boolean gameOver;
+
+    /**
+     * Creates an empty snapshot sized for the given world.
+     */
+    public RenderSnapshot(World world) {
+        enemies = new EnemyStore(world.getEnemies().getCapacity(), new GameRandom(0));
+        particles = new Particles(world.getParticles().getCapacity(), 0);
+    }
+
+    /**
+     * Copies the world's state as of its latest tick.
+     *
+     * @param inputSince time of the oldest key event that tick applied, or 0 if there was none
+     */
+    public void capture(World world, long inputSince) {
+        player.copyFrom(world.getPlayer());
+        enemies.copyFrom(world.getEnemies());
+        particles.copyFrom(world.getParticles());
+        tick = world.getTick();
+        score = world.getScore().getScore();
+        lives = world.getLives();
+        gameOver = world.isGameOver();
+        this.inputSince = inputSince;
+        capturedAt = System.nanoTime();
+    }
+
+    /**
+     * @return how far {@code now} lies between this tick (0) and when the next one is due (1)
+     */
+    public double alphaAt(long now) {
+        return Math.max(0, Math.min(1, (double) (now - capturedAt) / GameLoop.TICK_NANOS));
+    }
+
+    public Player getPlayer() { return player; }
+    public EnemyStore getEnemies() { return enemies; }
+    public Particles getParticles() { return particles; }
+    public long getTick() { return tick; }
+    public long getInputSince() { return inputSince; }
+    public int getScore() { return score; }
+    public int getLives() { return lives; }
+    public boolean isGameOver() { return gameOver; }
+}
@@ -0,0 +1,280 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compact binary recording of a game: the world's seed plus the input of every tick, enough to
+ * replay the game exactly. State checksums are stored every few ticks, so a replay that drifts
+ * from the recorded game is caught at the tick where it happened. The level map is identified
+ * by its {@link TileMap#getHash() hash}, so a replay only plays on the map it was recorded on.
+ *
+ * <pre>
+ * header:  "MMBR" version:u8 seed:i64 map:i64 enemies:varint checksumInterval:varint
+ * entries: INPUT(0-7)   run:varint          same buttons for 'run' ticks
+ *          RESTART                          World.restart()
+ *          CHECKSUM     tick:varint sum:i64 World.checksum() after that tick
+ *          END
+ * </pre>
+ */
+public final class Replay {
+
+    private static final int MAGIC = 0x4D4D4252; // "MMBR"
+    // 2: levels come from the tile map, no view height entries
+    // 3: animation state is hashed as clip and start tick
+    // 4: respawns and the hit state run on the timer wheel
+    // 5: respawns keep clear of the players
+    // 6: hits on a recovering player cost no life
+    // 7: the header names the level map
+    // 8: respawns stay inside narrow levels and fall back to the nearest clear gap
+    private static final int VERSION = 8;
+    private static final int RESTART = 0x41;
+    private static final int CHECKSUM = 0x42;
+    private static final int END = 0xFF;
+
+    public static final int DEFAULT_CHECKSUM_INTERVAL = 60;
+    // Most enemies a recording may ask for, so a corrupt header cannot allocate a huge world.
+    private static final int MAX_ENEMIES = 1 << 20;
+
+    private Replay() {}
+
+    /**
+     * Records the input applied to a world. Call {@link #recordTick} just before each
+     * {@code World.tick()} and {@link #afterTick} right after it.
+     */
+    public static final class Recorder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        private final int checksumInterval;
+
+        private int runButtons = -1;
+        private int runLength;
+        private long lastChecksumTick = -1;
+
+        public Recorder(World world, int checksumInterval) {
+            this.checksumInterval = Math.max(1, checksumInterval);
+            writeInt(MAGIC);
+            out.write(VERSION);
+            writeLong(world.getSeed());
+            writeLong(world.getLevel().getMap().getHash());
+            writeVarint(world.getEnemyCount());
+            writeVarint(this.checksumInterval);
+        }
+
+        public void recordTick(int buttons) {
+            buttons &= 7;
+            if (buttons != runButtons) {
+                flushRun();
+                runButtons = buttons;
+            }
+            runLength++;
+        }
+
+        public void afterTick(World world) {
+            long tick = world.getTick();
+            if (tick % checksumInterval == 0 && tick != lastChecksumTick) {
+                lastChecksumTick = tick;
+                flushRun();
+                out.write(CHECKSUM);
+                writeVarint(tick);
+                writeLong(world.checksum());
+            }
+        }
+
+        public void recordRestart() {
+            flushRun();
+            out.write(RESTART);
+        }
+
+        private void flushRun() {
+            if (runLength > 0) {
+                out.write(runButtons);
+                writeVarint(runLength);
+                runLength = 0;
+            }
+        }
+
+        /**
+         * @return the recording so far, terminated; recording can continue afterwards
+         */
+        public byte[] toByteArray() {
+            flushRun();
+            byte[] bytes = out.toByteArray();
+            byte[] terminated = java.util.Arrays.copyOf(bytes, bytes.length + 1);
+            terminated[bytes.length] = (byte) END;
+            return terminated;
+        }
+
+        public void save(Path path) throws IOException {
+            Files.write(path, toByteArray());
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        private void writeInt(int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                out.write(value >>> shift);
+            }
+        }
+
+        private void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+    }
+
+    /**
+     * Feeds a recording back into a world one tick at a time and checks the stored checksums.
+     */
+    public static final class Playback {
+        private final byte[] data;
+        private int position;
+
+        private final long seed;
+        private final long mapHash;
+        private final int enemyCount;
+        private final int checksumInterval;
+
+        private int runButtons;
+        private int runRemaining;
+        private boolean finished;
+
+        private long checksumsVerified;
+        private long divergedAt = -1;
+
+        public Playback(byte[] data) {
+            this.data = data;
+            if (data.length < 13 || readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a replay file");
+            }
+            int version = data[position++] & 0xFF;
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported replay version " + version);
+            }
+            seed = readLong();
+            mapHash = readLong();
+            long enemies = readVarint(), interval = readVarint();
+            if (enemies < 1 || enemies > MAX_ENEMIES) {
+                throw new IllegalArgumentException("Bad enemy count " + enemies + " in replay");
+            }
+            if (interval < 1 || interval > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Bad checksum interval " + interval + " in replay");
+            }
+            enemyCount = (int) enemies;
+            checksumInterval = (int) interval;
+        }
+
+        public static Playback load(Path path) throws IOException {
+            return new Playback(Files.readAllBytes(path));
+        }
+
+        /**
+         * @return a fresh world in the state the recording started from
+         * @throws IllegalArgumentException if the default level map is not the one recorded on
+         */
+        public World createWorld() {
+            if (TileMap.defaultMap().getHash() != mapHash) {
+                throw new IllegalArgumentException("Replay was recorded on a different level map");
+            }
+            return new World(enemyCount, seed);
+        }
+
+        /**
+         * Applies the next recorded tick to {@code world}, which must have been created by
+         * {@link #createWorld()} and advanced only through this playback.
+         *
+         * @return false once the recording has ended
+         * @throws IllegalArgumentException if the recording is truncated or malformed
+         */
+        public boolean step(World world) {
+            if (runRemaining == 0) {
+                readControl(world);
+            }
+            if (finished) return false;
+
+            world.applyInput(runButtons);
+            world.tick();
+            runRemaining--;
+
+            if (runRemaining == 0) {
+                readControl(world);
+            }
+            return true;
+        }
+
+        /**
+         * Processes entries up to the next input run, or the end of the recording.
+         */
+        private void readControl(World world) {
+            while (runRemaining == 0 && !finished) {
+                int tag = position < data.length ? data[position++] & 0xFF : END;
+                if (tag < 8) {
+                    long run = readVarint();
+                    if (run < 1 || run > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("Bad input run " + run + " in replay");
+                    }
+                    runButtons = tag;
+                    runRemaining = (int) run;
+                } else if (tag == RESTART) {
+                    world.restart();
+                } else if (tag == CHECKSUM) {
+                    verify(world, readVarint(), readLong());
+                } else {
+                    finished = true;
+                }
+            }
+        }
+
+        private void verify(World world, long tick, long expected) {
+            if (world.getTick() == tick && world.checksum() == expected) {
+                checksumsVerified++;
+            } else if (divergedAt < 0) {
+                divergedAt = tick;
+                System.err.println("Replay diverged at tick " + tick + " (world is at tick " + world.getTick() + ")");
+            }
+        }
+
+        public boolean isFinished() { return finished; }
+        public long getChecksumsVerified() { return checksumsVerified; }
+        public int getChecksumInterval() { return checksumInterval; }
+
+        /**
+         * @return the first tick whose checksum did not match, or -1 if none so far
+         */
+        public long getDivergedAt() { return divergedAt; }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = nextByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IllegalArgumentException("Malformed varint at byte " + position);
+        }
+
+        private int readInt() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (nextByte() & 0xFF);
+            }
+            return value;
+        }
+
+        private long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        private byte nextByte() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated replay");
+            }
+            return data[position++];
+        }
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A complete copy of a {@link World}'s simulation in one binary buffer, for quick-save,
+ * resuming after a crash and branching a world to try out different input.
+ * <pre>
+ * header (40 bytes; the whole state is little-endian, so arrays copy without byte swapping):
+ *   magic "MMBS", version:i32, length:i32, enemyCapacity:i32, levelWidth:i32, seed:i64, map:i64, reserved
+ * world:      tick lives gameOver score kills random, then players
+ * enemies:    slot arrays up to the high-water mark, then the free list
+ * particles:  count random, then every live particle, pop-ups included
+ * timers:     the timer wheel's slot lists and timer arrays, as they are
+ * collisions: the broadphase cell lists, whose order decides the order contacts are handled
+ * </pre>
+ * Every section is written field by field in a fixed order, with arrays copied in bulk, so
+ * capturing and restoring a world take microseconds and allocate little besides the buffer. A
+ * restored world continues exactly as the captured one would have: its checksum is the same
+ * and so is every tick after it, given the same input. The level map is not saved, only its
+ * {@link TileMap#getHash() hash}; a state can only be restored on the map it was captured on.
+ */
+public final class SaveState {
+
+    private static final int MAGIC = 0x4D4D4253; // "MMBS"
+    // 2: players keep their full clip start and tick
+    // 3: the header names the level map
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 40;
+
+    private SaveState() {}
+
+    /**
+     * Captures the world into {@code reuse} if it is large enough, otherwise into a new buffer.
+     *
+     * @return the buffer, positioned at 0 with its limit at the end of the state
+     */
+    public static ByteBuffer capture(World world, ByteBuffer reuse) {
+        int length = HEADER_BYTES + world.stateSize();
+        ByteBuffer out = (reuse != null && reuse.capacity() >= length) ? reuse : ByteBuffer.allocateDirect(length);
+        out.clear().order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(length).putInt(world.getEnemies().getCapacity())
+                .putInt(world.getLevel().getWidth()).putLong(world.getSeed())
+                .putLong(world.getLevel().getMap().getHash());
+        out.position(HEADER_BYTES);
+        world.saveState(out);
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Makes {@code world} continue from a captured state. The world must have been created
+     * with the same enemy count as the captured one, on the same level. The buffer's position
+     * is left unchanged.
+     *
+     * @throws IllegalArgumentException if the state is malformed or does not fit the world, in
+     *                                  which case the world is not changed
+     */
+    public static void restore(World world, ByteBuffer state) {
+        ByteBuffer in = state.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        in.position(0);
+        checkHeader(in);
+        if (in.getInt(12) != world.getEnemies().getCapacity() || in.getInt(16) != world.getLevel().getWidth()) {
+            throw new IllegalArgumentException("Save state is for a different world: " + in.getInt(12)
+                    + " enemies, level width " + in.getInt(16));
+        }
+        if (in.getLong(28) != world.getLevel().getMap().getHash()) {
+            throw new IllegalArgumentException("Save state is for a different level map");
+        }
+        in.position(HEADER_BYTES);
+        // Checked in full first, so a bad state leaves the world as it was.
+        try {
+            world.checkState(in.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated save state", e);
+        }
+        world.loadState(in);
+    }
+
+    /**
+     * Creates a new world from a captured state.
+     *
+     * @throws IllegalArgumentException if the state is malformed
+     */
+    public static World createWorld(ByteBuffer state) {
+        ByteBuffer in = state.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        in.position(0);
+        checkHeader(in);
+        // The broadphase alone stores three ints per enemy, which bounds the count.
+        int enemies = in.getInt(12);
+        if (enemies < 1 || enemies > in.limit() / (3 * Integer.BYTES)) {
+            throw new IllegalArgumentException("Bad enemy count " + enemies + " in save state");
+        }
+        World world = new World(enemies, in.getLong(20));
+        restore(world, state);
+        return world;
+    }
+
+    private static void checkHeader(ByteBuffer in) {
+        if (in.limit() < HEADER_BYTES || in.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a save state");
+        }
+        int version = in.getInt(4);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported save state version " + version);
+        }
+        if (in.getInt(8) != in.limit()) {
+            throw new IllegalArgumentException("Truncated save state: " + in.limit() + " of " + in.getInt(8) + " bytes");
+        }
+    }
+
+    /**
+     * Writes a captured state to a file with a single channel write. The state goes to a
+     * temporary file that then replaces {@code path}, so a crash mid-write leaves the previous
+     * save intact.
+     */
+    public static void write(ByteBuffer state, Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer out = state.duplicate();
+        out.position(0);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a state written by {@link #write}.
+     */
+    public static ByteBuffer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Save state too large: " + path);
+            }
+            ByteBuffer in = ByteBuffer.allocateDirect((int) size);
+            while (in.hasRemaining()) {
+                if (channel.read(in) < 0) throw new EOFException(path.toString());
+            }
+            in.flip();
+            return in.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    public static void save(World world, Path path) throws IOException {
+        write(capture(world, null), path);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the file is not a valid save state
+     */
+    public static World load(Path path) throws IOException {
+        return createWorld(read(path));
+    }
+
+    // Checks for the sections, run over the whole state before any of it is restored.
+
+    /**
+     * Skips {@code count} values of {@code bytes} bytes each.
+     *
+     * @throws IllegalArgumentException if the state ends before them
+     */
+    static void skip(ByteBuffer in, int count, int bytes) {
+        if (count < 0 || (long) count * bytes > in.remaining()) {
+            throw new IllegalArgumentException("Truncated save state");
+        }
+        in.position(in.position() + count * bytes);
+    }
+
+    /**
+     * Reads {@code count} ints, each of which must lie in {@code min..max}.
+     *
+     * @throws IllegalArgumentException if one does not or the state ends before them
+     */
+    static void checkInts(ByteBuffer in, int count, int min, int max, String what) {
+        if (count < 0 || (long) count * Integer.BYTES > in.remaining()) {
+            throw new IllegalArgumentException("Truncated save state");
+        }
+        for (int i = 0; i < count; i++) {
+            int value = in.getInt();
+            if (value < min || value > max) {
+                throw new IllegalArgumentException("Bad " + what + " " + value + " in save state");
+            }
+        }
+    }
+
+    // Bulk array copies for the sections, through views of the buffer.
+
+    static void putInts(ByteBuffer out, int[] values, int count) {
+        out.asIntBuffer().put(values, 0, count);
+        out.position(out.position() + count * Integer.BYTES);
+    }
+
+    static void getInts(ByteBuffer in, int[] values, int count) {
+        in.asIntBuffer().get(values, 0, count);
+        in.position(in.position() + count * Integer.BYTES);
+    }
+
+    static void putLongs(ByteBuffer out, long[] values, int count) {
+        out.asLongBuffer().put(values, 0, count);
+        out.position(out.position() + count * Long.BYTES);
+    }
+
+    static void getLongs(ByteBuffer in, long[] values, int count) {
+        in.asLongBuffer().get(values, 0, count);
+        in.position(in.position() + count * Long.BYTES);
+    }
+
+    static void putFloats(ByteBuffer out, float[] values, int count) {
+        out.asFloatBuffer().put(values, 0, count);
+        out.position(out.position() + count * Float.BYTES);
+    }
+
+    static void getFloats(ByteBuffer in, float[] values, int count) {
+        in.asFloatBuffer().get(values, 0, count);
+        in.position(in.position() + count * Float.BYTES);
+    }
+
+    static void putBooleans(ByteBuffer out, boolean[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            out.put(values[i] ? (byte) 1 : 0);
+        }
+    }
+
+    static void getBooleans(ByteBuffer in, boolean[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            values[i] = in.get() != 0;
+        }
+    }
+}
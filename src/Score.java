@@ -24,6 +24,14 @@ public class Score {
         return killCount;
     }
     
+    /**
+     * Sets both values at once, when a saved game is restored.
+     */
+    void restore(int score, int killCount) {
+        this.score = score;
+        this.killCount = killCount;
+    }
+
     public void reset() {
         score = 0;
         killCount = 0;
@@ -0,0 +1,195 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The world state sent to network clients, flattened into an int array with a fixed layout:
+ * <pre>
+ * header:  tick score kills lives gameOver playerSlots enemySlots worldTick
+ * players: playerSlots x (present, Player state)
+ * enemies: enemySlots x (flags, x, y, clip, clipStart)
+ * </pre>
+ * {@code tick} is the server's snapshot counter, which keeps running while the world stands
+ * still on game over. Clip start ticks are in world ticks, the low 32 bits of which are in
+ * {@code worldTick}.
+ * A snapshot is sent as a delta against one the client has acknowledged: runs of unchanged
+ * ints are skipped and changed ones are sent as zigzag varint differences, so an enemy that
+ * walked two pixels costs one byte. With no baseline every int is compared against zero.
+ */
+final class Snapshot {
+
+    static final int TICK = 0;
+    static final int SCORE = 1;
+    static final int KILLS = 2;
+    static final int LIVES = 3;
+    static final int GAME_OVER = 4;
+    static final int PLAYER_SLOTS = 5;
+    static final int ENEMY_SLOTS = 6;
+    static final int WORLD_TICK = 7;
+    static final int HEADER = 8;
+
+    static final int PLAYER_FIELDS = 1 + Player.STATE_SIZE;
+    static final int ENEMY_FIELDS = 5;
+
+    // Enemy flag bits
+    static final int ENEMY_ACTIVE = 1;
+    static final int ENEMY_ALIVE = 2;
+    static final int ENEMY_VISIBLE = 4;
+    static final int ENEMY_FACING_RIGHT = 8;
+
+    private Snapshot() {}
+
+    /**
+     * Captures the world into {@code reuse} if it is large enough, otherwise into a new array.
+     *
+     * @param tick the snapshot's id, counted by the server
+     */
+    static int[] capture(World world, int tick, int[] reuse) {
+        EnemyStore enemies = world.getEnemies();
+        int players = world.getPlayerCount();
+        int slots = enemies.getHighWater();
+        int length = HEADER + players * PLAYER_FIELDS + slots * ENEMY_FIELDS;
+        int[] s = (reuse != null && reuse.length == length) ? reuse : new int[length];
+
+        s[TICK] = tick;
+        s[SCORE] = world.getScore().getScore();
+        s[KILLS] = world.getScore().getKillCount();
+        s[LIVES] = world.getLives();
+        s[GAME_OVER] = world.isGameOver() ? 1 : 0;
+        s[PLAYER_SLOTS] = players;
+        s[ENEMY_SLOTS] = slots;
+        s[WORLD_TICK] = (int) world.getTick();
+
+        for (int p = 0; p < players; p++) {
+            int o = playerOffset(p);
+            Player player = world.getPlayer(p);
+            if (player != null) {
+                s[o] = 1;
+                player.saveState(s, o + 1);
+            } else {
+                Arrays.fill(s, o, o + PLAYER_FIELDS, 0);
+            }
+        }
+        for (int i = 0; i < slots; i++) {
+            int o = enemyOffset(s, i);
+            s[o] = (enemies.active[i] ? ENEMY_ACTIVE : 0) | (enemies.alive[i] ? ENEMY_ALIVE : 0)
+                    | (enemies.isVisible(i) ? ENEMY_VISIBLE : 0) | (enemies.facingRight[i] ? ENEMY_FACING_RIGHT : 0);
+            s[o + 1] = enemies.x[i];
+            s[o + 2] = enemies.y[i];
+            s[o + 3] = enemies.clip[i];
+            s[o + 4] = (int) enemies.clipStart[i];
+        }
+        return s;
+    }
+
+    /**
+     * @return where player {@code index}'s fields start: the present flag, then its state
+     */
+    static int playerOffset(int index) {
+        return HEADER + index * PLAYER_FIELDS;
+    }
+
+    static int enemyOffset(int[] s, int i) {
+        return HEADER + s[PLAYER_SLOTS] * PLAYER_FIELDS + i * ENEMY_FIELDS;
+    }
+
+    /**
+     * Writes {@code current} as a delta against {@code baseline}, which may be null.
+     */
+    static void writeDelta(int[] current, int[] baseline, ByteBuffer out) {
+        int length = current.length;
+        writeVarint(out, length);
+        int i = 0;
+        while (i < length) {
+            int start = i;
+            while (i < length && current[i] == at(baseline, i)) i++;
+            writeVarint(out, i - start);
+            if (i == length) break;
+
+            start = i;
+            while (i < length && current[i] != at(baseline, i)) i++;
+            writeVarint(out, i - start);
+            for (int k = start; k < i; k++) {
+                int delta = current[k] - at(baseline, k);
+                writeVarint(out, (delta << 1) ^ (delta >> 31));
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeDelta} against the same baseline, into
+     * {@code reuse} if it has the snapshot's length, otherwise into a new array. The length
+     * must match the layout the snapshot's own header describes, which is checked as soon as
+     * the header is decoded, before anything larger than the header is allocated.
+     *
+     * @throws IllegalArgumentException if the data is malformed; {@code reuse} may then hold
+     *                                  part of the snapshot
+     */
+    static int[] readDelta(ByteBuffer in, int[] baseline, int[] reuse) {
+        int length = readVarint(in);
+        if (length < HEADER) {
+            throw new IllegalArgumentException("Bad snapshot length " + length);
+        }
+        int[] s = (reuse != null && reuse.length == length) ? reuse : new int[HEADER];
+
+        int skip = readVarint(in), run = -1; // -1 until the run after a skip has been read
+        for (int i = 0; i < length; i++) {
+            if (i == HEADER) {
+                s = sized(s, length);
+            }
+            if (skip == 0 && run == 0) {
+                skip = readVarint(in);
+                run = -1;
+            }
+            if (skip > 0) {
+                if (skip > length - i) throw new IllegalArgumentException("Bad snapshot run");
+                s[i] = at(baseline, i);
+                skip--;
+                continue;
+            }
+            if (run < 0) {
+                run = readVarint(in);
+                if (run == 0 || run > length - i) throw new IllegalArgumentException("Bad snapshot run");
+            }
+            int zigzag = readVarint(in);
+            s[i] = at(baseline, i) + ((zigzag >>> 1) ^ -(zigzag & 1));
+            run--;
+        }
+        return length == HEADER ? sized(s, length) : s;
+    }
+
+    /**
+     * Checks a decoded header against the snapshot length and returns an array of that length
+     * holding the header.
+     */
+    private static int[] sized(int[] s, int length) {
+        int players = s[PLAYER_SLOTS], slots = s[ENEMY_SLOTS];
+        if (players < 0 || slots < 0
+                || HEADER + (long) players * PLAYER_FIELDS + (long) slots * ENEMY_FIELDS != length) {
+            throw new IllegalArgumentException("Snapshot length " + length + " does not fit " + players
+                    + " players and " + slots + " enemy slots");
+        }
+        return s.length == length ? s : Arrays.copyOf(s, length);
+    }
+
+    private static int at(int[] baseline, int i) {
+        return (baseline != null && i < baseline.length) ? baseline[i] : 0;
+    }
+
+    static void writeVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+}
@@ -0,0 +1,31 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.ByteArrayInputStream;
+
+/**
+ * A decoded sound effect held in memory. Immutable; every call to {@link #openStream()}
+ * returns an independent stream over the same sample data.
+ */
+public final class Sound {
+    private final AudioFormat format;
+    private final byte[] data;
+    private final long frameLength;
+
+    Sound(AudioFormat format, byte[] data) {
+        this.format = format;
+        this.data = data;
+        this.frameLength = data.length / Math.max(1, format.getFrameSize());
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    public AudioInputStream openStream() {
+        return new AudioInputStream(new ByteArrayInputStream(data), format, frameLength);
+    }
+}
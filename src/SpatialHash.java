@@ -0,0 +1,184 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Uniform-grid broadphase over the playfield.
+ * Each entity is filed under the cell holding the top-left corner of its box, in intrusive
+ * doubly linked lists stored in int arrays, so moving an entity between cells is O(1) and
+ * nothing is allocated after construction. Cells must be at least as large as the biggest
+ * entity; queries then only need to look one cell up and to the left of the query box.
+ */
+public class SpatialHash {
+
+    private static final int NONE = -1;
+
+    private final int cellSize;
+    private final int cols, rows;
+
+    private final int[] cellHead;
+    private final int[] next, prev;
+    private final int[] cellOf;
+
+    /**
+     * @param width    playfield width in pixels; positions outside are clamped to the edge cells
+     * @param height   playfield height in pixels
+     * @param cellSize cell edge in pixels, no smaller than the largest entity box
+     * @param capacity number of entity ids, which range over {@code 0..capacity-1}
+     */
+    public SpatialHash(int width, int height, int cellSize, int capacity) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (width + cellSize - 1) / cellSize);
+        this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+
+        cellHead = new int[cols * rows];
+        next = new int[capacity];
+        prev = new int[capacity];
+        cellOf = new int[capacity];
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(cellHead, NONE);
+        Arrays.fill(cellOf, NONE);
+    }
+
+    /**
+     * Inserts an entity or moves it to the cell for its new position. Does nothing when the
+     * entity stays within its current cell.
+     */
+    public void update(int id, int x, int y) {
+        int cell = cellIndex(x, y);
+        int current = cellOf[id];
+        if (current == cell) return;
+        if (current != NONE) {
+            unlink(id, current);
+        }
+        link(id, cell);
+    }
+
+    public void remove(int id) {
+        int current = cellOf[id];
+        if (current != NONE) {
+            unlink(id, current);
+        }
+    }
+
+    public boolean contains(int id) {
+        return cellOf[id] != NONE;
+    }
+
+    /** @return the number of bytes {@link #saveState} writes */
+    int stateSize() {
+        return Integer.BYTES + 3 * cellOf.length * Integer.BYTES;
+    }
+
+    /**
+     * Writes every entity's cell and neighbours in its cell's list, from which the lists are
+     * rebuilt in the same order by {@link #loadState}.
+     */
+    void saveState(ByteBuffer out) {
+        int capacity = cellOf.length;
+        out.putInt(capacity);
+        SaveState.putInts(out, cellOf, capacity);
+        SaveState.putInts(out, next, capacity);
+        SaveState.putInts(out, prev, capacity);
+    }
+
+    /**
+     * Reads state written by {@link #saveState} and checks it fits this hash. Changes nothing.
+     */
+    void checkState(ByteBuffer in) {
+        int capacity = cellOf.length;
+        if (in.getInt() != capacity) {
+            throw new IllegalArgumentException("Broadphase state does not fit a capacity of " + capacity);
+        }
+        SaveState.checkInts(in, capacity, NONE, cellHead.length - 1, "broadphase cell");
+        SaveState.checkInts(in, 2 * capacity, NONE, capacity - 1, "broadphase link");
+    }
+
+    /**
+     * Restores state written by {@link #saveState} from a hash of the same size.
+     */
+    void loadState(ByteBuffer in) {
+        int capacity = cellOf.length;
+        if (in.getInt() != capacity) {
+            throw new IllegalArgumentException("Broadphase state does not fit a capacity of " + capacity);
+        }
+        // Only the occupied cells need emptying; there are far more cells than entities.
+        for (int id = 0; id < capacity; id++) {
+            if (cellOf[id] != NONE) {
+                cellHead[cellOf[id]] = NONE;
+            }
+        }
+        SaveState.getInts(in, cellOf, capacity);
+        SaveState.getInts(in, next, capacity);
+        SaveState.getInts(in, prev, capacity);
+        for (int id = 0; id < capacity; id++) {
+            if (cellOf[id] != NONE && prev[id] == NONE) {
+                cellHead[cellOf[id]] = id;
+            }
+        }
+    }
+
+    /**
+     * Collects the ids of entities whose cells could overlap the given box.
+     * Results are candidates only; callers still run an exact overlap test.
+     *
+     * @param out scratch buffer the ids are written to
+     * @return the number of ids written, never more than {@code out.length}
+     */
+    public int query(int x, int y, int width, int height, int[] out) {
+        int minCol = clampCol(Math.floorDiv(x, cellSize) - 1);
+        int minRow = clampRow(Math.floorDiv(y, cellSize) - 1);
+        int maxCol = clampCol(Math.floorDiv(x + width, cellSize));
+        int maxRow = clampRow(Math.floorDiv(y + height, cellSize));
+
+        int count = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                for (int id = cellHead[row * cols + col]; id != NONE; id = next[id]) {
+                    if (count == out.length) return count;
+                    out[count++] = id;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void link(int id, int cell) {
+        int head = cellHead[cell];
+        next[id] = head;
+        prev[id] = NONE;
+        if (head != NONE) {
+            prev[head] = id;
+        }
+        cellHead[cell] = id;
+        cellOf[id] = cell;
+    }
+
+    private void unlink(int id, int cell) {
+        int p = prev[id];
+        int n = next[id];
+        if (p != NONE) {
+            next[p] = n;
+        } else {
+            cellHead[cell] = n;
+        }
+        if (n != NONE) {
+            prev[n] = p;
+        }
+        cellOf[id] = NONE;
+    }
+
+    private int cellIndex(int x, int y) {
+        return clampRow(Math.floorDiv(y, cellSize)) * cols + clampCol(Math.floorDiv(x, cellSize));
+    }
+
+    private int clampCol(int col) {
+        return col < 0 ? 0 : (col >= cols ? cols - 1 : col);
+    }
+
+    private int clampRow(int row) {
+        return row < 0 ? 0 : (row >= rows ? rows - 1 : row);
+    }
+}
@@ -0,0 +1,88 @@
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * A list of animation frames to draw, in draw order, collected once per frame so
+ * {@link SpriteBlitter} or {@link #draw} can draw them in one pass. Entries are kept in parallel arrays that
+ * grow as needed and are reused after {@link #clear}, so filling a batch allocates nothing
+ * once it has reached its working size.
+ */
+public final class SpriteBatch {
+
+    int count;
+    int[] clip, frame, x, y; // Clip id, frame index and position in level pixels
+    boolean[] facingRight;
+
+    private SpriteFrames[] scaled = new SpriteFrames[0]; // By clip id, sliced for draw() on first use
+    private int scaledAt;
+
+    public SpriteBatch(int capacity) {
+        capacity = Math.max(1, capacity);
+        clip = new int[capacity];
+        frame = new int[capacity];
+        x = new int[capacity];
+        y = new int[capacity];
+        facingRight = new boolean[capacity];
+    }
+
+    /**
+     * Adds the frame {@code clip} shows {@code ticks} ticks after it started, with its
+     * top-left corner at ({@code x}, {@code y}).
+     */
+    public void add(AnimationClip clip, long ticks, boolean facingRight, int x, int y) {
+        if (count == this.clip.length) {
+            grow();
+        }
+        this.clip[count] = clip.getId();
+        frame[count] = clip.frameAt(ticks);
+        this.facingRight[count] = facingRight;
+        this.x[count] = x;
+        this.y[count] = y;
+        count++;
+    }
+
+    /**
+     * Draws every sprite with Java2D into a target {@code scale} times smaller than the level,
+     * whose top-left corner shows level position ({@code originX}, {@code originY}). Each frame
+     * is sliced at its size in the target and drawn at whole target pixels, so it is copied
+     * without resampling. {@code g} must be untransformed, in target pixels.
+     */
+    public void draw(Graphics g, int scale, int originX, int originY) {
+        Rectangle bounds = g.getClipBounds();
+        if (scaled.length != Animations.count() || scale != scaledAt) {
+            scaled = new SpriteFrames[Animations.count()];
+            scaledAt = scale;
+        }
+        for (int i = 0; i < count; i++) {
+            SpriteFrames frames = scaled[clip[i]];
+            if (frames == null) {
+                frames = scaled[clip[i]] = Animations.get(clip[i]).getFrames(scale);
+                if (frames == null) continue;
+            }
+            int drawX = Math.floorDiv(x[i] - originX, scale);
+            int drawY = Math.floorDiv(y[i] - originY, scale);
+            if (bounds != null && (drawX >= bounds.x + bounds.width || drawX + frames.getWidth() <= bounds.x
+                    || drawY >= bounds.y + bounds.height || drawY + frames.getHeight() <= bounds.y)) {
+                continue;
+            }
+            frames.draw(g, frame[i], facingRight[i], drawX, drawY);
+        }
+    }
+
+    private void grow() {
+        int capacity = clip.length * 2;
+        clip = Arrays.copyOf(clip, capacity);
+        frame = Arrays.copyOf(frame, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        facingRight = Arrays.copyOf(facingRight, capacity);
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+}
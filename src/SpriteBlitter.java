@@ -0,0 +1,203 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Draws a {@link SpriteBatch} by writing straight into the pixel array of a
+ * {@code TYPE_INT_ARGB_PRE} image, skipping Java2D's per-image setup, which dominates once
+ * there are thousands of sprites. Frames come from {@link RasterFrames}: each visible run of
+ * a row is clipped once and then copied with {@code System.arraycopy} when the frame has only
+ * opaque and transparent pixels, or blended pixel by pixel otherwise. Left-facing frames are
+ * stored pre-flipped, so both facings draw the same way.
+ * <p>
+ * With enough sprites the clip is split into horizontal bands drawn as ForkJoin tasks. Each
+ * band only writes its own rows and draws every sprite in batch order, so the result is
+ * identical to drawing serially.
+ * <p>
+ * Writing to the pixel array stops Java2D from caching the image in video memory, so the
+ * target is meant to be composed in software and copied to the screen once per frame.
+ */
+public final class SpriteBlitter {
+
+    /**
+     * Fewest sprites in a batch before it is drawn in bands, from
+     * {@code game.blitParallelThreshold}. Defaults to never on a single core.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = Integer.getInteger("game.blitParallelThreshold",
+            ForkJoinPool.getCommonPoolParallelism() > 1 ? 1024 : Integer.MAX_VALUE);
+    private static final int MIN_BAND_HEIGHT = 32;
+
+    private final int[] pixels;
+    private final int width, height;
+    private final int scale;
+
+    private final RasterFrames[] clips = new RasterFrames[Animations.count()]; // By clip id, looked up on first draw
+    private int originX, originY;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * @param target the image to draw into
+     * @param scale  level pixels per target pixel; sprites are sliced at 1/{@code scale} of their size
+     * @throws IllegalArgumentException if the target is not {@code TYPE_INT_ARGB_PRE}
+     */
+    public SpriteBlitter(BufferedImage target, int scale) {
+        if (target.getType() != BufferedImage.TYPE_INT_ARGB_PRE) {
+            throw new IllegalArgumentException("Target must be TYPE_INT_ARGB_PRE, was type " + target.getType());
+        }
+        pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        width = target.getWidth();
+        height = target.getHeight();
+        this.scale = scale;
+    }
+
+    /**
+     * Sets the level position drawn at the target's top-left corner.
+     */
+    public void setOrigin(int x, int y) {
+        originX = x;
+        originY = y;
+    }
+
+    /**
+     * Sets how many sprites a batch must hold before it is drawn in bands.
+     * 0 always splits and {@link Integer#MAX_VALUE} never does.
+     */
+    public void setParallelThreshold(int sprites) {
+        parallelThreshold = sprites;
+    }
+
+    /**
+     * Draws every sprite in the batch, in order, inside a clip rectangle in target pixels.
+     */
+    public void draw(SpriteBatch batch, int clipX, int clipY, int clipWidth, int clipHeight) {
+        int x1 = Math.max(0, clipX), y1 = Math.max(0, clipY);
+        int x2 = Math.min(width, clipX + clipWidth), y2 = Math.min(height, clipY + clipHeight);
+        if (x1 >= x2 || y1 >= y2 || batch.count == 0) return;
+
+        // Resolved up front, so bands never race to slice a sheet.
+        for (int i = 0; i < batch.count; i++) {
+            frames(batch.clip[i]);
+        }
+
+        int bands = Math.min(ForkJoinPool.getCommonPoolParallelism() * 2, (y2 - y1) / MIN_BAND_HEIGHT);
+        if (batch.count >= parallelThreshold && bands > 1) {
+            int grain = (y2 - y1 + bands - 1) / bands;
+            ForkJoinPool.commonPool().invoke(new BandTask(batch, x1, y1, x2, y2, grain));
+        } else {
+            drawRows(batch, x1, y1, x2, y2);
+        }
+    }
+
+    private RasterFrames frames(int clip) {
+        RasterFrames frames = clips[clip];
+        if (frames == null) {
+            SpriteFrames sliced = Animations.get(clip).getFrames(scale);
+            if (sliced == null) return null;
+            frames = clips[clip] = sliced.getRaster();
+        }
+        return frames;
+    }
+
+    /**
+     * Draws the part of every sprite that falls inside the clip. Writes no pixel outside it.
+     */
+    private void drawRows(SpriteBatch batch, int x1, int y1, int x2, int y2) {
+        for (int i = 0; i < batch.count; i++) {
+            RasterFrames frames = clips[batch.clip[i]];
+            if (frames == null) continue;
+
+            int x = Math.floorDiv(batch.x[i] - originX, scale);
+            int y = Math.floorDiv(batch.y[i] - originY, scale);
+            if (x >= x2 || x + frames.width <= x1 || y >= y2 || y + frames.height <= y1) {
+                continue; // Off screen, most of the level
+            }
+
+            int frame = batch.frame[i];
+            if (batch.facingRight[i]) {
+                blit(frames.right[frame], frames.rightRuns[frame], frames.opaque[frame], frames.width,
+                        frames.height, x, y, x1, y1, x2, y2);
+            } else {
+                blit(frames.left[frame], frames.leftRuns[frame], frames.opaque[frame], frames.width,
+                        frames.height, x, y, x1, y1, x2, y2);
+            }
+        }
+    }
+
+    private void blit(int[] source, int[] runs, boolean opaque, int frameWidth, int frameHeight,
+                      int x, int y, int x1, int y1, int x2, int y2) {
+        int rowFrom = Math.max(0, y1 - y), rowTo = Math.min(frameHeight, y2 - y);
+        int columnFrom = x1 - x, columnTo = x2 - x;
+        int[] pixels = this.pixels;
+
+        for (int r = rowFrom; r < rowTo; r++) {
+            int sourceRow = r * frameWidth;
+            int targetRow = (y + r) * width + x;
+            for (int s = runs[r], end = runs[r + 1]; s < end; s += 2) {
+                int from = Math.max(runs[s], columnFrom);
+                int to = Math.min(runs[s + 1], columnTo);
+                if (from >= to) continue;
+
+                if (opaque) {
+                    System.arraycopy(source, sourceRow + from, pixels, targetRow + from, to - from);
+                } else {
+                    for (int c = from; c < to; c++) {
+                        pixels[targetRow + c] = over(source[sourceRow + c], pixels[targetRow + c]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Composites one premultiplied pixel over another: each channel becomes
+     * {@code src + dst * (255 - srcAlpha) / 255}, rounded, two channels per multiply.
+     */
+    private static int over(int src, int dst) {
+        int inverse = 255 - (src >>> 24);
+        if (inverse == 0) return src;
+
+        int rb = (dst & 0xff00ff) * inverse + 0x800080;
+        rb = ((rb + ((rb >>> 8) & 0xff00ff)) >>> 8) & 0xff00ff;
+        int ag = ((dst >>> 8) & 0xff00ff) * inverse + 0x800080;
+        ag = (ag + ((ag >>> 8) & 0xff00ff)) & 0xff00ff00;
+        return src + (ag | rb);
+    }
+
+    /**
+     * Splits a row range in halves until it is no taller than one band.
+     */
+    private final class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SpriteBatch batch;
+        private final int x1, y1, x2, y2, grain;
+
+        BandTask(SpriteBatch batch, int x1, int y1, int x2, int y2, int grain) {
+            this.batch = batch;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (y2 - y1 <= grain) {
+                drawRows(batch, x1, y1, x2, y2);
+                return;
+            }
+            int mid = (y1 + y2) >>> 1;
+            invokeAll(new BandTask(batch, x1, y1, x2, mid, grain), new BandTask(batch, x1, mid, x2, y2, grain));
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,100 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Slices horizontal sprite sheets into individual frames once, pre-scaled to their draw
+ * size and stored in both facings as screen-compatible images.
+ * The cache is shared by every entity, so a sheet drawn at a given size is only ever sliced once.
+ */
+public final class SpriteCache {
+
+    private static final Map<Key, SpriteFrames> cache = new ConcurrentHashMap<>();
+
+    private SpriteCache() {
+    }
+
+    /**
+     * Returns the frames of a sheet scaled to {@code width} x {@code height}, slicing it on first use.
+     *
+     * @return the frames, or null if the sheet is missing or not loaded
+     */
+    public static SpriteFrames get(Image sheet, int frameCount, int width, int height) {
+        if (sheet == null || sheet.getWidth(null) <= 0) return null;
+        return cache.computeIfAbsent(new Key(sheet, frameCount, width, height),
+                k -> slice(sheet, frameCount, width, height));
+    }
+
+    public static void clear() {
+        cache.clear();
+    }
+
+    private static SpriteFrames slice(Image sheet, int frameCount, int width, int height) {
+        int frameW = sheet.getWidth(null) / frameCount;
+        int frameH = sheet.getHeight(null);
+
+        Image[] right = new Image[frameCount];
+        Image[] left = new Image[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            int sx1 = i * frameW;
+            int sx2 = sx1 + frameW;
+            right[i] = render(sheet, width, height, 0, width, sx1, sx2, frameH);
+            left[i] = render(sheet, width, height, width, 0, sx1, sx2, frameH);
+        }
+        return new SpriteFrames(right, left, width, height);
+    }
+
+    private static Image render(Image sheet, int width, int height, int dx1, int dx2, int sx1, int sx2, int frameH) {
+        BufferedImage image = createCompatibleImage(width, height);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g.drawImage(sheet, dx1, 0, dx2, height, sx1, 0, sx2, frameH, null);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Creates a translucent image in the screen's native pixel layout so it can be cached in
+     * video memory, or a plain ARGB image when there is no screen.
+     */
+    static BufferedImage createCompatibleImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    private static final class Key {
+        private final Image sheet;
+        private final int frameCount, width, height;
+
+        Key(Image sheet, int frameCount, int width, int height) {
+            this.sheet = sheet;
+            this.frameCount = frameCount;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return sheet == k.sheet && frameCount == k.frameCount && width == k.width && height == k.height;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(sheet);
+            h = 31 * h + frameCount;
+            h = 31 * h + width;
+            return 31 * h + height;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import java.awt.*;
+
+/**
+ * The pre-sliced frames of one sprite sheet at one draw size, in both facings.
+ * Instances come from {@link SpriteCache} and are shared between entities.
+ */
+public final class SpriteFrames {
+    private final Image[] right;
+    private final Image[] left;
+    private final int width, height;
+    private RasterFrames raster; // Built on first use by the software blitter
+
+    SpriteFrames(Image[] right, Image[] left, int width, int height) {
+        this.right = right;
+        this.left = left;
+        this.width = width;
+        this.height = height;
+    }
+
+    public Image frame(int index, boolean facingRight) {
+        return facingRight ? right[index] : left[index];
+    }
+
+    /**
+     * Draws a frame with a single unscaled blit.
+     */
+    public void draw(Graphics g, int index, boolean facingRight, int x, int y) {
+        g.drawImage(frame(index, facingRight), x, y, null);
+    }
+
+    /**
+     * @return the frames as pixel arrays for {@link SpriteBlitter}, read back on first use
+     */
+    public synchronized RasterFrames getRaster() {
+        if (raster == null) {
+            raster = new RasterFrames(this);
+        }
+        return raster;
+    }
+
+    public int getFrameCount() {
+        return right.length;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
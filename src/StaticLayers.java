@@ -0,0 +1,123 @@
+import java.awt.*;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches the parts of the scene that don't change between frames, such as the background and
+ * the ground, as screen-sized images. Consecutive layers with the same parallax factor are
+ * composited into a single accelerated image, which is only repainted when the view is resized,
+ * the layers are invalidated, or the video memory holding it is lost.
+ */
+public class StaticLayers {
+
+    /**
+     * Paints a layer's contents for a view of the given size.
+     */
+    public interface Painter {
+        void paint(Graphics2D g, int width, int height);
+    }
+
+    private static final class Group {
+        final double parallax;
+        final List<Painter> painters = new ArrayList<>();
+        Image image;
+        boolean stale = true;
+
+        Group(double parallax) {
+            this.parallax = parallax;
+        }
+    }
+
+    private final List<Group> groups = new ArrayList<>();
+
+    /**
+     * Adds a layer on top of the existing ones.
+     *
+     * @param parallax how far the layer scrolls per pixel of camera movement; 0 keeps it fixed
+     *                 to the screen, and moving layers repeat horizontally
+     */
+    public void addLayer(Painter painter, double parallax) {
+        Group last = groups.isEmpty() ? null : groups.get(groups.size() - 1);
+        if (last == null || last.parallax != parallax) {
+            last = new Group(parallax);
+            groups.add(last);
+        }
+        last.painters.add(painter);
+        last.stale = true;
+    }
+
+    /**
+     * Forces every layer to be repainted on the next draw.
+     */
+    public void invalidate() {
+        for (Group group : groups) {
+            group.stale = true;
+        }
+    }
+
+    /**
+     * Draws all layers for a view of the given size.
+     *
+     * @param gc      configuration to create accelerated images for, or null to use plain images
+     * @param cameraX horizontal camera position in world pixels
+     */
+    public void draw(Graphics2D g, GraphicsConfiguration gc, int width, int height, int cameraX) {
+        for (Group group : groups) {
+            Image image = prepare(group, gc, width, height);
+
+            if (group.parallax == 0) {
+                g.drawImage(image, 0, 0, null);
+            } else {
+                int offset = -(int) Math.floorMod(Math.round(cameraX * group.parallax), (long) width);
+                g.drawImage(image, offset, 0, null);
+                if (offset != 0) {
+                    g.drawImage(image, offset + width, 0, null);
+                }
+            }
+
+            if (image instanceof VolatileImage && ((VolatileImage) image).contentsLost()) {
+                group.stale = true;
+            }
+        }
+    }
+
+    private Image prepare(Group group, GraphicsConfiguration gc, int width, int height) {
+        Image image = group.image;
+        if (image == null || image.getWidth(null) != width || image.getHeight(null) != height) {
+            image = (gc != null)
+                    ? gc.createCompatibleVolatileImage(width, height, Transparency.TRANSLUCENT)
+                    : SpriteCache.createCompatibleImage(width, height);
+            group.image = image;
+            group.stale = true;
+        }
+
+        if (image instanceof VolatileImage) {
+            VolatileImage volatileImage = (VolatileImage) image;
+            int status = volatileImage.validate(gc);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                image = gc.createCompatibleVolatileImage(width, height, Transparency.TRANSLUCENT);
+                group.image = image;
+            }
+            if (status != VolatileImage.IMAGE_OK) {
+                group.stale = true;
+            }
+        }
+
+        if (group.stale) {
+            Graphics2D lg = (Graphics2D) image.getGraphics();
+            try {
+                lg.setComposite(AlphaComposite.Clear);
+                lg.fillRect(0, 0, width, height);
+                lg.setComposite(AlphaComposite.SrcOver);
+                for (Painter painter : group.painters) {
+                    painter.paint(lg, width, height);
+                }
+            } finally {
+                lg.dispose();
+            }
+            group.stale = false;
+        }
+        return image;
+    }
+}
@@ -0,0 +1,132 @@
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rasterizes styled strings once into translucent images and reuses them afterwards.
+ * Entries are evicted least-recently-used first once their pixels exceed the memory cap.
+ */
+public class TextCache {
+
+    private static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+    private static final TextCache shared = new TextCache(DEFAULT_MAX_BYTES);
+
+    // Default rendering hints, matching what drawString on the screen used to produce.
+    private static final FontRenderContext FRC = new FontRenderContext(null, false, false);
+
+    private final long maxBytes;
+    private long bytes;
+    private final LinkedHashMap<Key, TextSprite> sprites = new LinkedHashMap<>(64, 0.75f, true);
+
+    public TextCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static TextCache shared() {
+        return shared;
+    }
+
+    /**
+     * Returns the sprite for a string in a style, rendering it on first use.
+     */
+    public synchronized TextSprite get(String text, TextStyle style) {
+        Key key = new Key(text, style);
+        TextSprite sprite = sprites.get(key);
+        if (sprite == null) {
+            sprite = render(text, style);
+            sprites.put(key, sprite);
+            bytes += sprite.getByteSize();
+            evict();
+        }
+        return sprite;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, TextSprite>> it = sprites.entrySet().iterator();
+        // Always keep the newest entry, even if it alone exceeds the cap.
+        while (bytes > maxBytes && sprites.size() > 1 && it.hasNext()) {
+            bytes -= it.next().getValue().getByteSize();
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        sprites.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return sprites.size();
+    }
+
+    public synchronized long getByteSize() {
+        return bytes;
+    }
+
+    private static TextSprite render(String text, TextStyle style) {
+        Font font = style.getFont();
+        LineMetrics metrics = font.getLineMetrics(text, FRC);
+        int ascent = (int) Math.ceil(metrics.getAscent());
+        int descent = (int) Math.ceil(metrics.getDescent());
+        int textWidth = (int) Math.ceil(font.getStringBounds(text, FRC).getWidth());
+
+        int pad = style.getEdgeOffset();
+        int width = Math.max(1, textWidth + 2 * pad);
+        int height = Math.max(1, ascent + descent + 2 * pad);
+        int baseX = pad;
+        int baseY = pad + ascent;
+
+        BufferedImage image = SpriteCache.createCompatibleImage(width, height);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setFont(font);
+            int o = style.getEdgeOffset();
+            switch (style.getEdge()) {
+                case OUTLINE:
+                    g.setColor(style.getEdgeColor());
+                    g.drawString(text, baseX + o, baseY + o);
+                    g.drawString(text, baseX - o, baseY - o);
+                    g.drawString(text, baseX + o, baseY - o);
+                    g.drawString(text, baseX - o, baseY + o);
+                    break;
+                case SHADOW:
+                    g.setColor(style.getEdgeColor());
+                    g.drawString(text, baseX + o, baseY + o);
+                    break;
+                default:
+                    break;
+            }
+            g.setColor(style.getFill());
+            g.drawString(text, baseX, baseY);
+        } finally {
+            g.dispose();
+        }
+        return new TextSprite(image, textWidth, baseX, baseY);
+    }
+
+    private static final class Key {
+        private final String text;
+        private final TextStyle style;
+
+        Key(String text, TextStyle style) {
+            this.text = text;
+            this.style = style;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return text.equals(k.text) && style.equals(k.style);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * text.hashCode() + style.hashCode();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.awt.*;
+
+/**
+ * A string pre-rendered in a {@link TextStyle}, drawn with a single blit.
+ * Positions passed to the draw methods are those {@code drawString} would take: the left end
+ * of the baseline of the unoutlined text.
+ */
+public final class TextSprite {
+
+    // Fade levels for translucent drawing; composites are shared instead of created per draw.
+    private static final int ALPHA_LEVELS = 32;
+    private static final AlphaComposite[] FADES = new AlphaComposite[ALPHA_LEVELS + 1];
+
+    static {
+        for (int i = 0; i <= ALPHA_LEVELS; i++) {
+            FADES[i] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, i / (float) ALPHA_LEVELS);
+        }
+    }
+
+    private final Image image;
+    private final int textWidth;
+    private final int originX, originY;
+
+    TextSprite(Image image, int textWidth, int originX, int originY) {
+        this.image = image;
+        this.textWidth = textWidth;
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    public void draw(Graphics g, int x, int baselineY) {
+        g.drawImage(image, x - originX, baselineY - originY, null);
+    }
+
+    /**
+     * Draws the sprite faded to {@code alpha}, restoring the previous composite afterwards.
+     */
+    public void draw(Graphics2D g, int x, int baselineY, float alpha) {
+        int level = Math.round(Math.max(0f, Math.min(1f, alpha)) * ALPHA_LEVELS);
+        if (level == ALPHA_LEVELS) {
+            draw(g, x, baselineY);
+            return;
+        }
+        if (level == 0) return;
+
+        Composite previous = g.getComposite();
+        g.setComposite(FADES[level]);
+        draw(g, x, baselineY);
+        g.setComposite(previous);
+    }
+
+    /**
+     * @return the advance width of the text itself, without the outline
+     */
+    public int getTextWidth() {
+        return textWidth;
+    }
+
+    /**
+     * Reports the area a draw at this position covers, outline included.
+     */
+    public void addBounds(DirtyRegions dirty, int x, int baselineY) {
+        dirty.add(x - originX, baselineY - originY, image.getWidth(null), image.getHeight(null));
+    }
+
+    int getByteSize() {
+        return image.getWidth(null) * image.getHeight(null) * 4;
+    }
+}
@@ -0,0 +1,67 @@
+import java.awt.*;
+
+/**
+ * How a cached text sprite is drawn: font, fill colour, and an optional outline or drop shadow.
+ * Immutable, so styles can be created once and shared as cache keys.
+ */
+public final class TextStyle {
+
+    public enum Edge {
+        NONE,
+        /** Edge colour drawn at the four diagonal offsets, giving an outline. */
+        OUTLINE,
+        /** Edge colour drawn once, offset down and to the right. */
+        SHADOW
+    }
+
+    private final Font font;
+    private final Color fill;
+    private final Edge edge;
+    private final Color edgeColor;
+    private final int edgeOffset;
+
+    public TextStyle(Font font, Color fill, Edge edge, Color edgeColor, int edgeOffset) {
+        this.font = font;
+        this.fill = fill;
+        this.edge = edge;
+        this.edgeColor = edgeColor;
+        this.edgeOffset = (edge == Edge.NONE) ? 0 : edgeOffset;
+    }
+
+    public static TextStyle plain(Font font, Color fill) {
+        return new TextStyle(font, fill, Edge.NONE, null, 0);
+    }
+
+    public static TextStyle outlined(Font font, Color fill, Color outline) {
+        return new TextStyle(font, fill, Edge.OUTLINE, outline, 1);
+    }
+
+    public static TextStyle shadowed(Font font, Color fill, Color shadow, int offset) {
+        return new TextStyle(font, fill, Edge.SHADOW, shadow, offset);
+    }
+
+    public Font getFont() { return font; }
+    public Color getFill() { return fill; }
+    public Edge getEdge() { return edge; }
+    public Color getEdgeColor() { return edgeColor; }
+    public int getEdgeOffset() { return edgeOffset; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TextStyle)) return false;
+        TextStyle s = (TextStyle) o;
+        return font.equals(s.font) && fill.equals(s.fill) && edge == s.edge
+                && edgeOffset == s.edgeOffset
+                && (edgeColor == null ? s.edgeColor == null : edgeColor.equals(s.edgeColor));
+    }
+
+    @Override
+    public int hashCode() {
+        int h = font.hashCode();
+        h = 31 * h + fill.hashCode();
+        h = 31 * h + edge.hashCode();
+        h = 31 * h + (edgeColor == null ? 0 : edgeColor.hashCode());
+        return 31 * h + edgeOffset;
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A tile-map level file, memory-mapped read-only. Opening a map costs the same however wide
+ * it is: nothing is read until a tile is asked for, and the OS pages the file in as needed.
+ * A map is immutable and safe to share between any number of {@link Level}s and threads.
+ *
+ * <pre>
+ * header (32 bytes, big-endian):
+ *   magic "MMBT", version:u16, tileSize:u16, width:i32, height:i32, chunkWidth:i32, chunkCount:i32, reserved
+ * chunks: chunkCount x (chunkWidth * height) tile bytes, column by column
+ * </pre>
+ * Chunks are vertical strips of {@code chunkWidth} columns spanning the full map height.
+ */
+public final class TileMap {
+
+    public static final int AIR = 0;
+    public static final int GRASS = 1;
+    public static final int DIRT = 2;
+
+    private static final int MAGIC = 0x4D4D4254; // "MMBT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    private static TileMap defaultMap;
+
+    private final MappedByteBuffer buffer;
+    private final int tileSize;
+    private final int width, height;
+    private final int chunkWidth, chunkCount;
+    private long hash; // Of the dimensions and tiles, once computed
+    private boolean hashed;
+
+    private TileMap(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a tile map file");
+        }
+        int version = buffer.getShort(4) & 0xFFFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported tile map version " + version);
+        }
+        tileSize = buffer.getShort(6) & 0xFFFF;
+        width = buffer.getInt(8);
+        height = buffer.getInt(12);
+        chunkWidth = buffer.getInt(16);
+        chunkCount = buffer.getInt(20);
+        if (tileSize <= 0 || width <= 0 || height <= 0 || chunkWidth <= 0
+                || (long) chunkCount * chunkWidth < width
+                || HEADER_BYTES + (long) chunkCount * chunkWidth * height > buffer.capacity()) {
+            throw new IllegalArgumentException("Corrupt tile map header");
+        }
+    }
+
+    public static TileMap open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return new TileMap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes a map file.
+     *
+     * @param tiles {@code width * height} tile ids, column by column
+     */
+    public static void write(Path path, int tileSize, int width, int height, int chunkWidth, byte[] tiles)
+            throws IOException {
+        int chunkCount = (width + chunkWidth - 1) / chunkWidth;
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + chunkCount * chunkWidth * height);
+        out.putInt(MAGIC).putShort((short) VERSION).putShort((short) tileSize)
+                .putInt(width).putInt(height).putInt(chunkWidth).putInt(chunkCount);
+        out.position(HEADER_BYTES);
+        // Columns past the right edge of the last chunk stay AIR.
+        out.put(tiles, 0, width * height);
+        out.clear();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    /**
+     * The map every world plays on unless told otherwise: the file named by the
+     * {@code game.level} system property, or else a generated level written to a temporary file.
+     */
+    public static synchronized TileMap defaultMap() {
+        if (defaultMap == null) {
+            try {
+                String path = System.getProperty("game.level");
+                if (path != null) {
+                    defaultMap = open(Paths.get(path));
+                } else {
+                    Path file = Files.createTempFile("mini-mario-level", ".mmbt");
+                    file.toFile().deleteOnExit();
+                    LevelGenerator.write(file, LevelGenerator.DEFAULT_WIDTH, LevelGenerator.DEFAULT_SEED);
+                    defaultMap = open(file);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load level", e);
+            }
+        }
+        return defaultMap;
+    }
+
+    /**
+     * Reads one tile straight from the mapping. Coordinates must be inside the map.
+     */
+    public int tileAt(int tx, int ty) {
+        return buffer.get(HEADER_BYTES + tx * height + ty);
+    }
+
+    /**
+     * Copies one chunk's tiles, column by column, into {@code dst}.
+     */
+    public void copyChunk(int chunk, byte[] dst) {
+        int base = HEADER_BYTES + chunk * chunkWidth * height;
+        int length = chunkWidth * height;
+        for (int i = 0; i < length; i++) {
+            dst[i] = buffer.get(base + i);
+        }
+    }
+
+    /**
+     * @return a hash of the map's dimensions and every tile, computed on first use, which
+     *         recordings and save states keep to tell which map they were made on
+     */
+    public synchronized long getHash() {
+        if (!hashed) {
+            long h = World.hash(World.hash(World.hash(0, tileSize), width), height);
+            h = World.hash(World.hash(h, chunkWidth), chunkCount);
+            int end = HEADER_BYTES + chunkCount * chunkWidth * height;
+            int i = HEADER_BYTES;
+            for (; i + Long.BYTES <= end; i += Long.BYTES) {
+                h = World.hash(h, buffer.getLong(i));
+            }
+            for (; i < end; i++) {
+                h = World.hash(h, buffer.get(i));
+            }
+            hash = h;
+            hashed = true;
+        }
+        return hash;
+    }
+
+    public int getTileSize() { return tileSize; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getChunkWidth() { return chunkWidth; }
+    public int getChunkCount() { return chunkCount; }
+}
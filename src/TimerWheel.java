@@ -0,0 +1,341 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Schedules delayed gameplay actions in simulation ticks, such as enemy respawns and the end
+ * of a player's hit window. Being stepped by {@link World#tick}, timers stop while the game is
+ * paused or over and replay exactly.
+ * <p>
+ * A hierarchical wheel: four levels of 256 slots, each level covering 256 times the span of
+ * the one below. A timer goes into the level its delay falls in and moves down a level each
+ * time the level below wraps around, so scheduling, cancelling and firing are all O(1) however
+ * many timers are pending. Timers are (type, target) pairs kept in parallel arrays linked into
+ * per-slot lists by index, so nothing is allocated per timer; the arrays only grow when more
+ * timers are pending than ever before.
+ * <p>
+ * Timers due on the same tick don't always fire in the order they were scheduled: one moved
+ * down from a higher level goes after those already in the slot, even if it was scheduled
+ * earlier. The order depends only on the calls made, so replays fire them the same way.
+ * Not thread-safe.
+ */
+public final class TimerWheel {
+
+    /**
+     * Receives timers as they fire.
+     */
+    public interface Handler {
+        void onTimer(int type, int target);
+    }
+
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    /** Longest delay {@link #schedule} accepts, about 2.7 years at 50 ticks per second. */
+    public static final long MAX_DELAY = (1L << (BITS * LEVELS)) - 1;
+
+    // A handle is a timer's index with a generation above it, so a stale handle whose
+    // timer has fired and whose index was reused does not cancel the new timer.
+    private static final int INDEX_BITS = 24;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = 0x7F;
+
+    private static final int NONE = -1;
+
+    // Timer fields by index. slot is NONE while the index is free.
+    private long[] due;
+    private int[] type, target;
+    private int[] next, prev, slot, generation;
+
+    private final int[] head = new int[LEVELS * SLOTS];
+    private final int[] tail = new int[LEVELS * SLOTS];
+    private int free; // First free index, chained through next
+    private int pending;
+    private long now;
+
+    /**
+     * @param capacity number of pending timers to make room for up front
+     */
+    public TimerWheel(int capacity) {
+        capacity = Math.max(1, capacity);
+        due = new long[capacity];
+        type = new int[capacity];
+        target = new int[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        slot = new int[capacity];
+        generation = new int[capacity];
+        Arrays.fill(slot, NONE);
+        clear();
+    }
+
+    /**
+     * Schedules a timer to fire {@code delay} ticks from now.
+     *
+     * @return a handle for {@link #cancel}
+     * @throws IllegalArgumentException if the delay is below 1 or above {@link #MAX_DELAY}
+     */
+    public int schedule(long delay, int type, int target) {
+        if (delay < 1 || delay > MAX_DELAY) {
+            throw new IllegalArgumentException("Timer delay out of range: " + delay);
+        }
+        if (free == NONE) {
+            grow();
+        }
+        int e = free;
+        free = next[e];
+        due[e] = now + delay;
+        this.type[e] = type;
+        this.target[e] = target;
+        link(e);
+        pending++;
+        return generation[e] << INDEX_BITS | e;
+    }
+
+    /**
+     * Cancels a pending timer.
+     *
+     * @return false if the timer had already fired or been cancelled
+     */
+    public boolean cancel(int handle) {
+        int e = handle & INDEX_MASK;
+        if (handle < 0 || e >= slot.length || slot[e] == NONE || generation[e] != handle >>> INDEX_BITS) {
+            return false;
+        }
+        unlink(e);
+        release(e);
+        return true;
+    }
+
+    /**
+     * Moves on to the next tick and fires every timer due on it. The handler may schedule and
+     * cancel timers, including ones due on this same tick.
+     *
+     * @return the number of timers fired
+     */
+    public int advance(Handler handler) {
+        now++;
+        if ((now & MASK) == 0) {
+            cascade(1);
+        }
+
+        int s = (int) now & MASK;
+        int fired = 0;
+        int e;
+        while ((e = head[s]) != NONE) {
+            unlink(e);
+            int t = type[e], id = target[e];
+            release(e);
+            handler.onTimer(t, id);
+            fired++;
+        }
+        return fired;
+    }
+
+    /**
+     * Moves the timers in the current slot of {@code level} down to the levels their remaining
+     * delay falls in, after doing the same for the level above if it wrapped too.
+     */
+    private void cascade(int level) {
+        if (level >= LEVELS) return;
+        int index = (int) (now >>> (BITS * level)) & MASK;
+        if (index == 0) {
+            cascade(level + 1);
+        }
+        int s = level * SLOTS + index;
+        int e = head[s];
+        head[s] = tail[s] = NONE;
+        while (e != NONE) {
+            int following = next[e];
+            link(e);
+            e = following;
+        }
+    }
+
+    /**
+     * Appends a timer to the slot its due tick falls in, as seen from now.
+     */
+    private void link(int e) {
+        long delay = due[e] - now;
+        int level = 0;
+        while (level < LEVELS - 1 && delay >>> (BITS * (level + 1)) != 0) {
+            level++;
+        }
+        int s = level * SLOTS + ((int) (due[e] >>> (BITS * level)) & MASK);
+
+        slot[e] = s;
+        next[e] = NONE;
+        prev[e] = tail[s];
+        if (tail[s] == NONE) {
+            head[s] = e;
+        } else {
+            next[tail[s]] = e;
+        }
+        tail[s] = e;
+    }
+
+    private void unlink(int e) {
+        int s = slot[e];
+        if (prev[e] == NONE) head[s] = next[e]; else next[prev[e]] = next[e];
+        if (next[e] == NONE) tail[s] = prev[e]; else prev[next[e]] = prev[e];
+    }
+
+    private void release(int e) {
+        slot[e] = NONE;
+        generation[e] = (generation[e] + 1) & GENERATION_MASK;
+        next[e] = free;
+        free = e;
+        pending--;
+    }
+
+    private void grow() {
+        int oldCapacity = slot.length;
+        int capacity = oldCapacity * 2;
+        if (capacity > INDEX_MASK + 1) {
+            throw new IllegalStateException("Too many pending timers");
+        }
+        due = Arrays.copyOf(due, capacity);
+        type = Arrays.copyOf(type, capacity);
+        target = Arrays.copyOf(target, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        slot = Arrays.copyOf(slot, capacity);
+        generation = Arrays.copyOf(generation, capacity);
+        for (int e = capacity - 1; e >= oldCapacity; e--) {
+            slot[e] = NONE;
+            next[e] = free;
+            free = e;
+        }
+    }
+
+    /**
+     * Drops every pending timer. The current tick is kept.
+     */
+    public void clear() {
+        Arrays.fill(head, NONE);
+        Arrays.fill(tail, NONE);
+        free = NONE;
+        for (int e = slot.length - 1; e >= 0; e--) {
+            if (slot[e] != NONE) {
+                generation[e] = (generation[e] + 1) & GENERATION_MASK;
+            }
+            slot[e] = NONE;
+            next[e] = free;
+            free = e;
+        }
+        pending = 0;
+    }
+
+    /** @return the tick the wheel last advanced to */
+    public long getNow() { return now; }
+
+    public int getPendingCount() { return pending; }
+
+    /** @return the number of bytes {@link #saveState} writes */
+    int stateSize() {
+        return Long.BYTES + 3 * Integer.BYTES + slot.length * (Long.BYTES + 6 * Integer.BYTES)
+                + 2 * head.length * Integer.BYTES;
+    }
+
+    /**
+     * Writes the wheel as it is, slot lists and free indices included, for {@link SaveState}.
+     * Timers then fire in the same order after a restore, and old handles stay valid.
+     */
+    void saveState(ByteBuffer out) {
+        int capacity = slot.length;
+        out.putLong(now).putInt(pending).putInt(free).putInt(capacity);
+        SaveState.putLongs(out, due, capacity);
+        SaveState.putInts(out, type, capacity);
+        SaveState.putInts(out, target, capacity);
+        SaveState.putInts(out, next, capacity);
+        SaveState.putInts(out, prev, capacity);
+        SaveState.putInts(out, slot, capacity);
+        SaveState.putInts(out, generation, capacity);
+        SaveState.putInts(out, head, head.length);
+        SaveState.putInts(out, tail, tail.length);
+    }
+
+    /**
+     * Reads state written by {@link #saveState} and checks every index in it. Changes nothing.
+     *
+     * @param targetLimit by timer type, one past the highest target a timer of that type may
+     *                    have; types beyond it are rejected
+     */
+    void checkState(ByteBuffer in, int[] targetLimit) {
+        in.getLong();
+        int pending = in.getInt();
+        int free = in.getInt();
+        int capacity = in.getInt();
+        if (capacity < 1 || capacity > INDEX_MASK + 1 || pending < 0 || pending > capacity
+                || free < NONE || free >= capacity) {
+            throw new IllegalArgumentException("Bad timer state: " + pending + " pending of " + capacity);
+        }
+        SaveState.skip(in, capacity, Long.BYTES);
+        int types = in.position();
+        SaveState.checkInts(in, capacity, 0, targetLimit.length - 1, "timer type");
+        int targets = in.position();
+        SaveState.skip(in, capacity, Integer.BYTES);
+        SaveState.checkInts(in, 2 * capacity, NONE, capacity - 1, "timer link");
+        int slots = in.position();
+        SaveState.checkInts(in, capacity, NONE, LEVELS * SLOTS - 1, "timer slot");
+        SaveState.skip(in, capacity, Integer.BYTES);
+        SaveState.checkInts(in, 2 * head.length, NONE, capacity - 1, "timer list end");
+
+        // Free timers keep whatever type and target they last had.
+        for (int e = 0; e < capacity; e++) {
+            if (in.getInt(slots + e * Integer.BYTES) == NONE) continue;
+            int target = in.getInt(targets + e * Integer.BYTES);
+            if (target < 0 || target >= targetLimit[in.getInt(types + e * Integer.BYTES)]) {
+                throw new IllegalArgumentException("Bad timer target " + target + " in save state");
+            }
+        }
+    }
+
+    /**
+     * Restores state written by {@link #saveState}, resizing the timer arrays to match.
+     */
+    void loadState(ByteBuffer in) {
+        now = in.getLong();
+        pending = in.getInt();
+        free = in.getInt();
+        int capacity = in.getInt();
+        if (capacity < 1 || capacity > INDEX_MASK + 1) {
+            throw new IllegalArgumentException("Bad timer capacity " + capacity);
+        }
+        if (capacity != slot.length) {
+            due = new long[capacity];
+            type = new int[capacity];
+            target = new int[capacity];
+            next = new int[capacity];
+            prev = new int[capacity];
+            slot = new int[capacity];
+            generation = new int[capacity];
+        }
+        SaveState.getLongs(in, due, capacity);
+        SaveState.getInts(in, type, capacity);
+        SaveState.getInts(in, target, capacity);
+        SaveState.getInts(in, next, capacity);
+        SaveState.getInts(in, prev, capacity);
+        SaveState.getInts(in, slot, capacity);
+        SaveState.getInts(in, generation, capacity);
+        SaveState.getInts(in, head, head.length);
+        SaveState.getInts(in, tail, tail.length);
+    }
+
+    /**
+     * Folds every pending timer into {@code hash}.
+     */
+    long checksum(long hash) {
+        hash = World.hash(hash, now);
+        hash = World.hash(hash, pending);
+        for (int e = 0; e < slot.length; e++) {
+            if (slot[e] == NONE) continue;
+            hash = World.hash(hash, e);
+            hash = World.hash(hash, due[e]);
+            hash = World.hash(hash, type[e]);
+            hash = World.hash(hash, target[e]);
+        }
+        return hash;
+    }
+}
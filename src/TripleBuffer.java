@@ -0,0 +1,52 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the newest of a stream of values from one writer thread to one reader thread without
+ * locks. Of the three buffers, the writer fills one, the reader holds another, and the third
+ * is the newest complete value. Publishing swaps the writer's buffer with that third one and
+ * reading swaps the reader's, each in a single atomic exchange, so neither side ever waits or
+ * sees a half-written value. Values the reader never got to are overwritten.
+ */
+public final class TripleBuffer<T> {
+
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4; // Set while the middle buffer has not been read
+
+    private final Object[] buffers;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0; // Owned by the writer
+    private int front = 2; // Owned by the reader
+
+    public TripleBuffer(T first, T second, T third) {
+        buffers = new Object[] { first, second, third };
+    }
+
+    /**
+     * @return the buffer the writer fills before calling {@link #publish}. Writer thread only.
+     */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer() {
+        return (T) buffers[back];
+    }
+
+    /**
+     * Makes the write buffer the newest value and hands the writer a free one. Writer thread only.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Takes the newest published value if there is one the reader has not seen. The returned
+     * buffer stays untouched by the writer until the next call. Reader thread only.
+     *
+     * @return the newest value, or the same one as last time if nothing was published since
+     */
+    @SuppressWarnings("unchecked")
+    public T getReadBuffer() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return (T) buffers[front];
+    }
+}
@@ -0,0 +1,573 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The complete game simulation: player, enemies, level, score, lives and the rules tying
+ * them together. It has no dependency on a display, so it can be stepped headless as fast as
+ * the CPU allows; {@link GameFrame} is only a view and input source on top of it.
+ * <p>
+ * A world starts with player 0. More players can join for co-op play through
+ * {@link #addPlayer}; they share the score and lives, and the level streams around the
+ * first player present.
+ */
+public class World {
+
+    /**
+     * Notified of gameplay events the simulation itself does not handle, such as sound.
+     */
+    public interface Listener {
+        default void onJump() {}
+        default void onEnemyStomped(int enemy) {}
+        default void onPlayerHit() {}
+        default void onGameOver() {}
+    }
+
+    public static final int WIDTH = 1920;
+    public static final int HEIGHT = 1020;
+
+    /** Button bits for {@link #applyInput(int)}. */
+    public static final int INPUT_LEFT = 1;
+    public static final int INPUT_RIGHT = 1 << 1;
+    public static final int INPUT_JUMP = 1 << 2;
+
+    public static final int START_LIVES = 3;
+    private static final int ENEMY_RESPAWN_TICKS = GameLoop.TICK_RATE; // 1 second
+    private static final int KILL_SCORE = 100;
+    private static final int PARTICLE_CAPACITY = 4096;
+    private static final int PLAYER_START_X = 100;
+    private static final int ENEMY_START_X = 600;
+    private static final int SPAWN_MARGIN = 240; // Clear space kept around each player on respawns
+
+    // Timer types; the target is an enemy slot or a player index.
+    private static final int TIMER_RESPAWN = 0;
+    private static final int TIMER_RECOVER = 1;
+
+    private static final Listener NO_LISTENER = new Listener() {};
+
+    private final int enemyCount;
+    private final long seed;
+    private final GameRandom random;
+    private final Level level;
+    private final EnemyStore enemies;
+    private final CollisionSystem collisions;
+    private final Contacts contacts;
+    private final Score score = new Score();
+    private final Particles particles;
+    private final TimerWheel timers;
+    private final TimerWheel.Handler timerHandler = this::onTimer;
+
+    private final List<Player> players = new ArrayList<>(); // Null where a player left
+    private int lives = START_LIVES;
+    private boolean isGameOver = false;
+    private long tick = 0;
+
+    private Listener listener = NO_LISTENER;
+    private Profiler profiler = Profiler.DISABLED;
+
+    public World(int enemyCount) {
+        this(enemyCount, System.nanoTime());
+    }
+
+    /**
+     * Creates a world whose randomness is fully determined by {@code seed}: the same seed and
+     * the same input on every tick always produce the same game.
+     */
+    public World(int enemyCount, long seed) {
+        this(enemyCount, seed, TileMap.defaultMap());
+    }
+
+    /**
+     * Creates a world playing the given level map.
+     */
+    public World(int enemyCount, long seed, TileMap map) {
+        this.enemyCount = Math.max(1, enemyCount);
+        this.seed = seed;
+        this.random = new GameRandom(seed);
+
+        level = new Level(map);
+
+        enemies = new EnemyStore(this.enemyCount, random);
+        particles = new Particles(PARTICLE_CAPACITY, seed ^ 0x5DEECE66DL);
+        collisions = new CollisionSystem(level.getWidth(), level.getHeight(), this.enemyCount);
+        contacts = new Contacts(this.enemyCount);
+        timers = new TimerWheel(this.enemyCount + 8);
+
+        players.add(createPlayer());
+        followPlayer();
+        spawnEnemies();
+    }
+
+    private Player createPlayer() {
+        return new Player(PLAYER_START_X, level.surfaceY(PLAYER_START_X) - 60);
+    }
+
+    /**
+     * Keeps the level chunks around the player resident and respawns enemies within a screen
+     * width of it, so the action stays where the camera is however long the level is, but
+     * never right next to a player.
+     */
+    private void followPlayer() {
+        Player first = null;
+        enemies.clearKeepOut();
+        for (Player player : players) {
+            if (player == null) continue;
+            if (first == null) first = player;
+            enemies.addKeepOut(player.getX() - SPAWN_MARGIN, player.getX() + player.getWidth() + SPAWN_MARGIN);
+        }
+        if (first == null) return;
+        int px = first.getX();
+        level.focus(px);
+        int minX = Math.max(0, Math.min(level.getWidth() - WIDTH, px - WIDTH / 2));
+        enemies.setSpawnRange(minX, Math.min(level.getWidth(), minX + WIDTH));
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = (listener != null) ? listener : NO_LISTENER;
+    }
+
+    /**
+     * Times the phases of each tick into the given profiler.
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = (profiler != null) ? profiler : Profiler.DISABLED;
+    }
+
+    /**
+     * Advances the simulation by one tick. Does nothing once the game is over.
+     */
+    public void tick() {
+        if (isGameOver) return;
+        tick++;
+
+        timers.advance(timerHandler);
+        long t = profiler.start();
+        for (Player player : players) {
+            if (player == null) continue;
+            boolean wasOnGround = player.isOnGround();
+            player.update(level, tick);
+            if (player.isOnGround() && !wasOnGround) {
+                particles.spawnDust(player.getX() + player.getWidth() / 2f, player.getY() + player.getHeight(), 8);
+            }
+        }
+        followPlayer();
+        t = profiler.end(Profiler.PLAYER, t);
+        enemies.update(level, tick);
+        t = profiler.end(Profiler.ENEMIES, t);
+
+        particles.update();
+        t = profiler.end(Profiler.PARTICLES, t);
+
+        checkCollisions();
+        profiler.end(Profiler.COLLISIONS, t);
+    }
+
+    /**
+     * Advances the simulation by up to {@code ticks} ticks, stopping early on game over.
+     *
+     * @return the number of ticks actually simulated
+     */
+    public int step(int ticks) {
+        int done = 0;
+        while (done < ticks && !isGameOver) {
+            tick();
+            done++;
+        }
+        return done;
+    }
+
+    /**
+     * Spawns the configured number of enemies: the first one at its usual start spot,
+     * the rest at random places along the ground.
+     */
+    private void spawnEnemies() {
+        enemies.clear();
+        int startY = level.surfaceY(ENEMY_START_X + EnemyStore.WIDTH / 2) - EnemyStore.HEIGHT;
+        for (int i = 0; i < enemyCount; i++) {
+            int slot = enemies.spawn(ENEMY_START_X, startY);
+            if (i > 0) {
+                enemies.respawn(slot, level);
+            }
+        }
+    }
+
+    private void checkCollisions() {
+        collisions.update(enemies);
+        for (int p = 0; p < players.size() && !isGameOver; p++) {
+            Player player = players.get(p);
+            if (player != null) {
+                checkCollisions(p, player);
+            }
+        }
+    }
+
+    private void checkCollisions(int p, Player player) {
+        int count = collisions.detect(player, enemies, contacts);
+
+        for (int c = 0; c < count; c++) {
+            int i = contacts.getEnemy(c);
+            if (!enemies.isAlive(i)) continue; // Stomped by another player this tick
+            switch (contacts.getType(c)) {
+                case STOMP:
+                    enemies.die(i);
+                    score.addScore(KILL_SCORE);
+                    score.addKill();
+                    player.bounce();
+
+                    int hitboxX = enemies.getHitboxX(i), hitboxY = enemies.getHitboxY(i);
+                    particles.spawnPopup(score.getKillCount(), hitboxX, hitboxY, 60, Particles.YELLOW);
+                    particles.spawnBurst(hitboxX + EnemyStore.HITBOX_WIDTH / 2f, hitboxY + EnemyStore.HITBOX_HEIGHT / 2f,
+                            24, Particles.ORANGE, 6f, 30);
+
+                    timers.schedule(ENEMY_RESPAWN_TICKS, TIMER_RESPAWN, i);
+                    recordCollision(ContactType.STOMP, i, player);
+                    listener.onEnemyStomped(i);
+                    break;
+                case HIT:
+                    if (!player.takeHit()) {
+                        break; // Still recovering from the last hit; later stomps still count
+                    }
+                    timers.schedule(Player.HIT_TICKS, TIMER_RECOVER, p);
+                    listener.onPlayerHit();
+                    loseLife(i);
+                    recordCollision(ContactType.HIT, i, player);
+                    return; // One hit per tick at most
+            }
+        }
+    }
+
+    private void onTimer(int type, int target) {
+        switch (type) {
+            case TIMER_RESPAWN:
+                enemies.respawn(target, level);
+                break;
+            case TIMER_RECOVER:
+                Player player = getPlayer(target);
+                if (player != null) {
+                    player.recover();
+                }
+                break;
+        }
+    }
+
+    private void recordCollision(ContactType type, int enemy, Player player) {
+        GameEvents.Collision event = new GameEvents.Collision();
+        if (event.shouldCommit()) {
+            event.type = type.name();
+            event.enemy = enemy;
+            event.playerX = player.getX();
+            event.playerY = player.getY();
+            event.score = score.getScore();
+            event.lives = lives;
+            event.commit();
+        }
+    }
+
+    private void loseLife(int enemy) {
+        lives--;
+        if (lives <= 0) {
+            lives = 0;
+            isGameOver = true;
+            listener.onGameOver();
+        } else {
+            enemies.respawn(enemy, level);
+        }
+    }
+
+    /**
+     * Starts a fresh run: full lives, zero score, player back at the start.
+     */
+    public void restart() {
+        lives = START_LIVES;
+        isGameOver = false;
+        timers.clear();
+
+        for (int p = 0; p < players.size(); p++) {
+            if (players.get(p) != null) {
+                players.set(p, createPlayer());
+            }
+        }
+        followPlayer();
+        for (int i = 0, n = enemies.getHighWater(); i < n; i++) {
+            if (enemies.isActive(i)) {
+                enemies.respawn(i, level);
+            }
+        }
+        score.reset();
+        particles.clear();
+    }
+
+    /**
+     * Adds a co-op player at the start of the level.
+     *
+     * @return the new player's index, reusing the slot of a player who left
+     */
+    public int addPlayer() {
+        Player player = createPlayer();
+        int index = players.indexOf(null);
+        if (index < 0) {
+            players.add(player);
+            return players.size() - 1;
+        }
+        players.set(index, player);
+        return index;
+    }
+
+    /**
+     * Removes a player, leaving its slot empty for the next one to join.
+     */
+    public void removePlayer(int index) {
+        if (index >= 0 && index < players.size()) {
+            players.set(index, null);
+        }
+    }
+
+    public void moveLeft() {
+        players.get(0).moveLeft();
+    }
+
+    public void moveRight() {
+        players.get(0).moveRight();
+    }
+
+    public void stop() {
+        players.get(0).stop();
+    }
+
+    /**
+     * Jumps if the player is standing on the ground.
+     *
+     * @return true if the player jumped
+     */
+    public boolean jump() {
+        if (!players.get(0).isOnGround()) return false;
+        players.get(0).jump();
+        listener.onJump();
+        return true;
+    }
+
+    /**
+     * Applies a set of held buttons to player 0, as a scripted or recorded controller would.
+     * Holding both or neither direction stands still; holding jump jumps whenever the player
+     * is grounded.
+     */
+    public void applyInput(int buttons) {
+        applyInput(0, buttons);
+    }
+
+    /**
+     * Applies a set of held buttons to the given player. Does nothing if that player left.
+     */
+    public void applyInput(int player, int buttons) {
+        Player p = getPlayer(player);
+        if (p != null && applyButtons(p, buttons)) {
+            listener.onJump();
+        }
+    }
+
+    /**
+     * Moves a player as the buttons say; shared with client-side prediction.
+     *
+     * @return true if the player jumped
+     */
+    static boolean applyButtons(Player player, int buttons) {
+        boolean left = (buttons & INPUT_LEFT) != 0;
+        boolean right = (buttons & INPUT_RIGHT) != 0;
+        if (right && !left) {
+            player.moveRight();
+        } else if (left && !right) {
+            player.moveLeft();
+        } else {
+            player.stop();
+        }
+        if ((buttons & INPUT_JUMP) != 0 && player.isOnGround()) {
+            player.jump();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return player 0, or null if it was removed
+     */
+    public Player getPlayer() { return players.get(0); }
+
+    /**
+     * @return the player at {@code index}, or null if that player left
+     */
+    public Player getPlayer(int index) {
+        return (index >= 0 && index < players.size()) ? players.get(index) : null;
+    }
+
+    /** @return the number of player slots, including those of players who left */
+    public int getPlayerCount() { return players.size(); }
+
+    public EnemyStore getEnemies() { return enemies; }
+    public Level getLevel() { return level; }
+    public Score getScore() { return score; }
+    public Particles getParticles() { return particles; }
+    public int getLives() { return lives; }
+    public boolean isGameOver() { return isGameOver; }
+    public long getTick() { return tick; }
+    public int getEnemyCount() { return enemyCount; }
+    public long getSeed() { return seed; }
+    public GameRandom getRandom() { return random; }
+    public TimerWheel getTimers() { return timers; }
+
+    /**
+     * Creates an independent copy of this world, for trying out different input from here
+     * on, such as when searching ahead for an AI. To branch many times from the same point,
+     * capture a {@link SaveState} once and restore it into a spare world instead.
+     */
+    public World copy() {
+        return SaveState.createWorld(SaveState.capture(this, null));
+    }
+
+    /** @return the number of bytes {@link #saveState} writes */
+    int stateSize() {
+        int playerBytes = 0;
+        for (Player player : players) {
+            playerBytes += 1 + ((player != null) ? Player.STATE_SIZE * Integer.BYTES : 0);
+        }
+        return 2 * Long.BYTES + 4 * Integer.BYTES + 1 + Integer.BYTES + playerBytes
+                + enemies.stateSize() + particles.stateSize() + timers.stateSize() + collisions.stateSize();
+    }
+
+    /**
+     * Writes the complete simulation state for {@link SaveState}.
+     */
+    void saveState(ByteBuffer out) {
+        out.putLong(tick).putInt(lives).put((byte) (isGameOver ? 1 : 0)).putInt(score.getScore())
+                .putInt(score.getKillCount()).putLong(random.getState()).putInt(enemyCount);
+
+        int[] state = new int[Player.STATE_SIZE];
+        out.putInt(players.size());
+        for (Player player : players) {
+            out.put((byte) (player != null ? 1 : 0));
+            if (player != null) {
+                player.saveState(state, 0);
+                SaveState.putInts(out, state, state.length);
+            }
+        }
+
+        enemies.saveState(out);
+        particles.saveState(out);
+        timers.saveState(out);
+        collisions.saveState(out);
+    }
+
+    /**
+     * Reads a state written by {@link #saveState} and checks that {@link #loadState} can
+     * restore it: section sizes, counts, slot and clip ids. Changes nothing.
+     *
+     * @throws IllegalArgumentException if it cannot
+     */
+    void checkState(ByteBuffer in) {
+        if (in.getLong() < 0) {
+            throw new IllegalArgumentException("Bad tick in save state");
+        }
+        in.getInt();
+        if ((in.get() & ~1) != 0) {
+            throw new IllegalArgumentException("Bad game-over flag in save state");
+        }
+        in.getInt();
+        in.getInt();
+        in.getLong();
+        if (in.getInt() != enemyCount) {
+            throw new IllegalArgumentException("Saved world has a different enemy count");
+        }
+
+        int[] state = new int[Player.STATE_SIZE];
+        int count = in.getInt();
+        if (count < 1 || count > in.remaining()) {
+            throw new IllegalArgumentException("Bad player count " + count);
+        }
+        for (int p = 0; p < count; p++) {
+            if (in.get() != 0) {
+                SaveState.getInts(in, state, state.length);
+                Player.checkState(state, 0);
+            }
+        }
+
+        enemies.checkState(in);
+        particles.checkState(in);
+        int[] targets = new int[2];
+        targets[TIMER_RESPAWN] = enemyCount;
+        targets[TIMER_RECOVER] = count;
+        timers.checkState(in, targets);
+        collisions.checkState(in);
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("Save state has " + in.remaining() + " bytes too many");
+        }
+    }
+
+    /**
+     * Restores state written by {@link #saveState}. Players are added or removed to match.
+     * The state must have passed {@link #checkState}.
+     */
+    void loadState(ByteBuffer in) {
+        tick = in.getLong();
+        lives = in.getInt();
+        isGameOver = in.get() != 0;
+        int points = in.getInt();
+        score.restore(points, in.getInt());
+        random.setState(in.getLong());
+        if (in.getInt() != enemyCount) {
+            throw new IllegalArgumentException("Saved world has a different enemy count");
+        }
+
+        int[] state = new int[Player.STATE_SIZE];
+        int count = in.getInt();
+        if (count < 1) {
+            throw new IllegalArgumentException("Bad player count " + count);
+        }
+        while (players.size() > count) {
+            players.remove(players.size() - 1);
+        }
+        for (int p = 0; p < count; p++) {
+            Player player = null;
+            if (in.get() != 0) {
+                player = (p < players.size() && players.get(p) != null) ? players.get(p) : createPlayer();
+                SaveState.getInts(in, state, state.length);
+                player.loadState(state, 0);
+            }
+            if (p < players.size()) {
+                players.set(p, player);
+            } else {
+                players.add(player);
+            }
+        }
+
+        enemies.loadState(in);
+        particles.loadState(in);
+        timers.loadState(in);
+        collisions.loadState(in);
+        followPlayer();
+    }
+
+    /**
+     * Hashes the complete simulation state. Two worlds with equal checksums behave identically
+     * from here on, given the same input.
+     */
+    public long checksum() {
+        long hash = 0xCBF29CE484222325L;
+        hash = hash(hash, tick);
+        hash = hash(hash, lives);
+        hash = hash(hash, isGameOver ? 1 : 0);
+        hash = hash(hash, score.getScore());
+        hash = hash(hash, score.getKillCount());
+        hash = hash(hash, random.getState());
+        hash = hash(hash, particles.getCount());
+        hash = timers.checksum(hash);
+        for (Player player : players) {
+            hash = (player != null) ? player.checksum(hash) : hash(hash, 0);
+        }
+        return enemies.checksum(hash);
+    }
+
+    static long hash(long hash, long value) {
+        hash ^= value;
+        hash *= 0x100000001B3L;
+        return hash ^ (hash >>> 29);
+    }
+}